@@ -1,21 +1,40 @@
 package io.mvnpm.esbuild;
 
 import static io.mvnpm.esbuild.script.ScriptRunner.getOutDir;
-import static io.mvnpm.esbuild.util.PathUtils.deleteRecursive;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 import org.jboss.logging.Logger;
 
+import io.mvnpm.esbuild.deno.ProcessRegistry;
 import io.mvnpm.esbuild.deno.ScriptLog;
 import io.mvnpm.esbuild.install.EsBuildDeps;
 import io.mvnpm.esbuild.install.WebDepsInstaller;
 import io.mvnpm.esbuild.model.*;
+import io.mvnpm.esbuild.script.ContextCache;
+import io.mvnpm.esbuild.script.DeferredDevProcess;
+import io.mvnpm.esbuild.script.DevProcess;
+import io.mvnpm.esbuild.script.RegisteredDevProcess;
 import io.mvnpm.esbuild.script.ScriptRunner;
+import io.mvnpm.esbuild.script.SupervisedDevProcess;
+import io.mvnpm.esbuild.script.WorkerPool;
+import io.mvnpm.esbuild.script.WorkerScript;
+import io.mvnpm.esbuild.serve.DevServer;
+import io.mvnpm.esbuild.util.Trash;
+import io.mvnpm.esbuild.watch.DevWatcher;
 
 public class Bundler {
     private static final Logger LOG = Logger.getLogger(Bundler.class);
@@ -29,8 +48,34 @@ public class Bundler {
      * @throws IOException when something could not be written
      */
     public static BundleResult bundle(BundleOptions bundleOptions, boolean install) throws IOException {
+        return bundle(bundleOptions, install, null);
+    }
+
+    /**
+     * Use esbuild to bundle either webjar or mvnpm dependencies into a bundle, using a warm Deno worker from the pool.
+     * <p>
+     * Bundles using the context cache (see {@link BundleOptionsBuilder#withContextCache(boolean)}) reuse a live esbuild
+     * context instead. The other in-memory bundles (see {@link BundleOptionsBuilder#withInMemoryOutput(boolean)}) are built
+     * with a dedicated process, their output files are in {@link BundleResult#outputFiles()}.
+     *
+     * @param bundleOptions options to do the bundling with
+     * @param install if the dependencies should be installed before bundling
+     * @param workerPool the pool of Deno workers to run the build with (a new Deno process is used if null)
+     * @return the folder that has the result of the transformation
+     * @throws IOException when something could not be written
+     */
+    public static BundleResult bundle(BundleOptions bundleOptions, boolean install, WorkerPool workerPool)
+            throws IOException {
+        if (bundleOptions.contextCache()) {
+            final Bundling bundling = getBundling(bundleOptions, install);
+            // the context logs its builds
+            return ContextCache.shared().build(bundling.workDir(), bundling.nodeModulesDir(), bundling.bundleOptions());
+        }
+        if (bundleOptions.inMemoryOutput()) {
+            return await(bundleAsync(bundleOptions, install), bundleOptions);
+        }
         final Bundling bundling = getBundling(bundleOptions, install);
-        ScriptLog log = esBuild(bundling.workDir(), bundling.nodeModulesDir(), bundling.bundleOptions());
+        ScriptLog log = esBuild(bundling.workDir(), bundling.nodeModulesDir(), bundling.bundleOptions(), workerPool);
 
         if (!Files.isDirectory(bundling.dist())) {
             throw new BundlingException("Unexpected Error during bundling", log);
@@ -41,14 +86,207 @@ public class Bundler {
         return new BundleResult(bundling.dist(), bundling.workDir(), log);
     }
 
+    /**
+     * Bundle without blocking the calling thread during the build, the dependencies are installed and the work directory is
+     * prepared on the calling thread. Cancelling the returned future cancels the esbuild build instead of killing the
+     * process.
+     *
+     * @param bundleOptions options to do the bundling with
+     * @param install if the dependencies should be installed before bundling
+     * @return the result of the bundling, completed exceptionally with a {@link BundlingException} when it failed
+     * @throws IOException when something could not be written
+     */
+    public static CompletableFuture<BundleResult> bundleAsync(BundleOptions bundleOptions, boolean install)
+            throws IOException {
+        final Bundling bundling = getBundling(bundleOptions, install);
+        final DevProcess process = new ScriptRunner(bundling.workDir(), bundling.nodeModulesDir(),
+                bundling.bundleOptions()).dev();
+        final CompletableFuture<BundleResult> result = new CompletableFuture<>();
+        process.initAsync()
+                .thenCompose(ignored -> {
+                    final CompletableFuture<BundleResult> build = process.buildAsync();
+                    result.whenComplete((r, e) -> {
+                        if (result.isCancelled()) {
+                            build.cancel(false);
+                        }
+                    });
+                    return build;
+                })
+                .whenComplete((r, e) -> {
+                    // Closing waits for the process, it must not run on the thread reading its output
+                    CompletableFuture.runAsync(() -> closeQuietly(process));
+                    if (e != null) {
+                        result.completeExceptionally(e instanceof CompletionException ? e.getCause() : e);
+                    } else if (!bundleOptions.inMemoryOutput() && !Files.isDirectory(bundling.dist())) {
+                        result.completeExceptionally(new BundlingException("Unexpected Error during bundling", r.logs()));
+                    } else {
+                        result.complete(r);
+                    }
+                });
+        return result;
+    }
+
+    /**
+     * Same as {@link #bundleAsync(BundleOptions, boolean)}, installing the dependencies.
+     */
+    public static CompletableFuture<BundleResult> bundleAsync(BundleOptions bundleOptions) throws IOException {
+        return bundleAsync(bundleOptions, true);
+    }
+
+    private static BundleResult await(CompletableFuture<BundleResult> result, BundleOptions bundleOptions)
+            throws IOException {
+        final long timeoutSeconds = bundleOptions.debugBuild() ? -1 : bundleOptions.timeoutSeconds();
+        try {
+            return timeoutSeconds > 0 ? result.get(timeoutSeconds, TimeUnit.SECONDS) : result.get();
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            throw new BundlingException("Bundling timed out after " + timeoutSeconds + " seconds");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Bundling process was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BundlingException bundlingException) {
+                throw bundlingException;
+            }
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new RuntimeException("Bundling process exited unexpectedly", e.getCause());
+        }
+    }
+
+    private static void closeQuietly(DevProcess process) {
+        try {
+            process.close();
+        } catch (IOException | RuntimeException e) {
+            LOG.debugf("Could not close the bundling process of ''%s'': %s", process.workDir(), e.getMessage());
+        }
+    }
+
     public static DevResult dev(BundleOptions bundleOptions, boolean install)
             throws IOException {
+        return dev(bundleOptions, install, null);
+    }
+
+    /**
+     * Same as {@link #prewarm(BundleOptions, boolean)}, installing the dependencies.
+     */
+    public static DevResult prewarm(BundleOptions bundleOptions) throws IOException {
+        return prewarm(bundleOptions, true);
+    }
+
+    /**
+     * Prepare a dev context in the background (dependencies installation and process startup) and return immediately, the
+     * first build only waits for the remaining preparation work (see {@link DeferredDevProcess}).
+     *
+     * @param bundleOptions options to do the bundling with
+     * @param install if the dependencies should be installed before bundling
+     * @return the dev result holding the context process, its initialization waits for the preparation
+     * @throws IOException when the work directory could not be created
+     */
+    public static DevResult prewarm(BundleOptions bundleOptions, boolean install) throws IOException {
+        final BundleOptions options = bundleOptions.edit().withWorkDir(getWorkDir(bundleOptions)).build();
+        final Path dist = getOutDir(options.workDir(), options.esBuildConfig());
+        final Executor background = r -> {
+            final Thread t = new Thread(r, "esbuild-prewarm");
+            t.setDaemon(true);
+            t.start();
+        };
+        final CompletableFuture<DevProcess> ready = CompletableFuture.supplyAsync(() -> {
+            try {
+                final Bundling bundling = getBundling(options, install);
+                return esBuildDev(bundling.workDir(), bundling.nodeModulesDir(), bundling.bundleOptions()).process();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, background).thenCompose(process -> process.initAsync()
+                .whenComplete((r, e) -> {
+                    if (e != null) {
+                        closeQuietly(process);
+                    }
+                })
+                .thenApply(r -> process));
+        return new DevResult(new DeferredDevProcess(ready, options.workDir(), dist,
+                options.debugBuild() ? -1 : options.timeoutSeconds()));
+    }
+
+    /**
+     * Start a dev context which can be rebuilt on demand.
+     *
+     * @param bundleOptions options to do the bundling with
+     * @param install if the dependencies should be installed before bundling
+     * @param host a shared Deno worker to host the context (with the same plugins and node_modules), a dedicated Deno
+     *        process is started if null
+     * @return the dev result holding the context process
+     * @throws IOException when something could not be written
+     */
+    public static DevResult dev(BundleOptions bundleOptions, boolean install, WorkerScript host)
+            throws IOException {
         final Bundling bundling = getBundling(bundleOptions, install);
-        final DevResult devResult = esBuildDev(bundling.workDir(), bundling.nodeModulesDir(), bundling.bundleOptions());
+        final DevResult devResult = esBuildDev(bundling.workDir(), bundling.nodeModulesDir(), bundling.bundleOptions(),
+                host);
         devResult.process().init();
         return devResult;
     }
 
+    /**
+     * Start a dev context and rebuild it when its files change (see {@link DevWatcher}), the result of the first build and
+     * of the next ones are published to the listener.
+     *
+     * @param bundleOptions options to do the bundling with
+     * @param install if the dependencies should be installed before bundling
+     * @param listener receives the result of each build
+     * @return the watcher, closing it closes the dev context
+     * @throws IOException when something could not be written
+     */
+    public static DevWatcher watch(BundleOptions bundleOptions, boolean install, Consumer<WatchBuildResult> listener)
+            throws IOException {
+        final DevResult devResult = dev(bundleOptions, install);
+        final DevProcess process = devResult.process();
+        final DevWatcher watcher = new DevWatcher(process, List.of(process.workDir()), Duration.ofMillis(500), true)
+                .addListener(listener);
+        try {
+            watcher.start();
+        } catch (IOException | RuntimeException e) {
+            watcher.close();
+            throw e;
+        }
+        return watcher;
+    }
+
+    /**
+     * Start a dev context, rebuild it when its files change and serve its output (see {@link DevServer}), the pages are
+     * notified after each successful build.
+     *
+     * @param bundleOptions options to do the bundling with, in-memory output avoids writing the files on each build
+     * @param install if the dependencies should be installed before bundling
+     * @param serveDir the directory serving the files which are not output files (e.g. index.html), or null
+     * @param address the address to bind, with port 0 to pick a free port
+     * @return the started server, closing it closes the watcher and the dev context
+     * @throws IOException when something could not be written or the address could not be bound
+     */
+    public static DevServer serve(BundleOptions bundleOptions, boolean install, Path serveDir, InetSocketAddress address)
+            throws IOException {
+        final DevResult devResult = dev(bundleOptions, install);
+        final DevProcess process = devResult.process();
+        final DevWatcher watcher = new DevWatcher(process, List.of(process.workDir()), Duration.ofMillis(500), true);
+        final DevServer server;
+        try {
+            server = new DevServer(watcher, serveDir, address);
+        } catch (IOException | RuntimeException e) {
+            devResult.close();
+            throw e;
+        }
+        try {
+            server.start();
+            watcher.start();
+        } catch (IOException | RuntimeException e) {
+            server.close();
+            throw e;
+        }
+        return server;
+    }
+
     private static Bundling getBundling(BundleOptions bundleOptions, boolean install) throws IOException {
         final Path workDir = getWorkDir(bundleOptions);
         final Path nodeModulesDir = getNodeModulesDir(workDir, bundleOptions);
@@ -74,9 +312,11 @@ public class Bundler {
     private static BundleOptions prepareForBundling(BundleOptions bundleOptions, Path nodeModulesDir, Path workDir, Path dist)
             throws IOException {
         final EsBuildConfig esBuildConfig = bundleOptions.esBuildConfig();
-        // Clean the dist directory from a previous bundling
-        deleteRecursive(dist);
-        Files.createDirectories(dist);
+        if (!bundleOptions.inMemoryOutput()) {
+            // Clean the dist directory from a previous bundling
+            Trash.delete(dist);
+            Files.createDirectories(dist);
+        }
 
         if (bundleOptions.entries() == null) {
             throw new IllegalArgumentException("At least one entry point is required");
@@ -109,20 +349,44 @@ public class Bundler {
     }
 
     public static void clearDependencies(Path nodeModulesDir) throws IOException {
-        deleteRecursive(nodeModulesDir);
+        Trash.delete(nodeModulesDir);
     }
 
     protected static DevResult esBuildDev(Path workDir, Path nodeModulesDir,
             BundleOptions bundleOptions)
             throws IOException {
+        return esBuildDev(workDir, nodeModulesDir, bundleOptions, null);
+    }
+
+    protected static DevResult esBuildDev(Path workDir, Path nodeModulesDir,
+            BundleOptions bundleOptions, WorkerScript host)
+            throws IOException {
         final ScriptRunner scriptRunner = new ScriptRunner(workDir, nodeModulesDir, bundleOptions);
-        return new DevResult(scriptRunner.dev());
+        final long timeoutSeconds = bundleOptions.debugBuild() ? -1 : bundleOptions.timeoutSeconds();
+        final SupervisedDevProcess.Factory factory;
+        if (bundleOptions.supervisedDev()) {
+            // A dead shared worker is not restarted by the supervisor, the replacement runs on a dedicated one
+            factory = () -> new SupervisedDevProcess(
+                    () -> host == null || !host.isAlive() ? scriptRunner.dev() : scriptRunner.dev(host), timeoutSeconds);
+        } else {
+            factory = () -> host == null ? scriptRunner.dev() : scriptRunner.dev(host);
+        }
+        if (host != null) {
+            // The shared worker outlives its contexts, it is not tracked for each of them
+            return new DevResult(factory.create());
+        }
+        return new DevResult(new RegisteredDevProcess(factory, ProcessRegistry.shared(), timeoutSeconds));
     }
 
     protected static ScriptLog esBuild(Path workDir, Path nodeModulesDir, BundleOptions bundleOptions)
             throws IOException {
+        return esBuild(workDir, nodeModulesDir, bundleOptions, null);
+    }
+
+    protected static ScriptLog esBuild(Path workDir, Path nodeModulesDir, BundleOptions bundleOptions, WorkerPool workerPool)
+            throws IOException {
         final ScriptRunner scriptRunner = new ScriptRunner(workDir, nodeModulesDir, bundleOptions);
-        return scriptRunner.build();
+        return workerPool == null ? scriptRunner.build() : scriptRunner.build(workerPool);
     }
 
 }
@@ -0,0 +1,62 @@
+package io.mvnpm.esbuild.binary;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.mvnpm.esbuild.BundlingException;
+import io.mvnpm.esbuild.deno.DenoRunner;
+import io.mvnpm.esbuild.model.BundleOptions;
+
+/**
+ * Locate the native esbuild binary, the builds without plugins run on it through the
+ * {@link io.mvnpm.esbuild.service.EsBuildService} instead of the Deno runtime.
+ */
+public class EsBuildRunner {
+    private static final Map<String, String> ESBUILD_BINARIES = Map.of(
+            "macos-arm64", "darwin-arm64",
+            "macos-x64", "darwin-x64",
+            "linux-arm64", "linux-arm64",
+            "linux-x64", "linux-x64",
+            "windows-arm64", "win32-arm64",
+            "windows-x64", "win32-x64");
+
+    /**
+     * @return true if this build can run on the native esbuild binary (no plugins and the binary is installed)
+     */
+    public static boolean supports(Path nodeModules, BundleOptions bundleOptions) {
+        return bundleOptions.plugins().isEmpty()
+                && Files.isRegularFile(getEsBuildBinaryPath(nodeModules));
+    }
+
+    public static Path getEsBuildBinary(Path nodeModules) {
+        final Path esBuildBinary = getEsBuildBinaryPath(nodeModules);
+        if (!Files.isRegularFile(esBuildBinary)) {
+            throw new BundlingException("EsBuild binary file not found for EsBuild Java: " + esBuildBinary);
+        }
+        esBuildBinary.toFile().setExecutable(true);
+        return esBuildBinary;
+    }
+
+    /**
+     * @return the version of the native esbuild binary, read from the package.json of its package
+     */
+    public static String getEsBuildVersion(Path nodeModules) throws IOException {
+        final Path esBuildBinary = getEsBuildBinaryPath(nodeModules);
+        final Path packageDir = DenoRunner.isWindows() ? esBuildBinary.getParent() : esBuildBinary.getParent().getParent();
+        final JsonNode packageJson = new ObjectMapper().readTree(packageDir.resolve("package.json").toFile());
+        return packageJson.path("version").asText();
+    }
+
+    private static Path getEsBuildBinaryPath(Path nodeModules) {
+        final String name = ESBUILD_BINARIES.get(DenoRunner.determineClassifier());
+        // on Windows the binary is at the root of the package
+        return DenoRunner.isWindows()
+                ? nodeModules.resolve("@esbuild/%s/esbuild.exe".formatted(name))
+                : nodeModules.resolve("@esbuild/%s/bin/esbuild".formatted(name));
+    }
+}
@@ -1,34 +1,31 @@
 package io.mvnpm.esbuild.deno;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import org.jboss.logging.Logger;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import io.mvnpm.esbuild.BundlingException;
-import io.mvnpm.esbuild.model.BundleOptions;
-import io.mvnpm.esbuild.model.EsBuildPlugin;
+import io.mvnpm.esbuild.runtime.JsRuntime;
 
 public class DenoRunner {
     private static final Logger LOG = Logger.getLogger(DenoRunner.class);
-    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+    private static final AtomicInteger PUMP_COUNTER = new AtomicInteger();
+    // Each child process gets its own output pump, so that a long build never delays the log reading of another one
+    private static final ExecutorService PUMPS = Executors.newCachedThreadPool(r -> {
         Thread t = new Thread(r);
         t.setDaemon(true);
-        t.setName("DenoRunner-Thread");
+        t.setName("DenoRunner-Pump-" + PUMP_COUNTER.incrementAndGet());
         return t;
     });
+    private static final int MAX_FRAME_LENGTH = 256 * 1024 * 1024;
     private static final Map<String, String> DENO_BINARIES = Map.of(
             "macos-arm64", "darwin-arm64",
             "macos-x64", "darwin-x64",
@@ -37,181 +34,85 @@ public class DenoRunner {
             "windows-arm64", "win32-arm64",
             "windows-x64", "win32-x64");
 
-    public static ScriptLog runDenoScript(Path workDir, Path nodeModules, String scriptContent, long timeoutSeconds)
+    /**
+     * Start a long-lived script file on the given JS runtime, its stdout and stderr are kept separate and left to the caller.
+     */
+    public static Process startScript(JsRuntime runtime, Path workDir, Path nodeModules, Path scriptFile, boolean debug)
             throws IOException {
-        final Path denoBinary = getDenoBinary(nodeModules);
-
-        final Path scriptFile = prepareScript(workDir, scriptContent);
-
-        final Process process = startProcess(workDir, denoBinary, scriptFile, false);
-        final Thread destroyHook = new Thread(process::destroyForcibly);
-        Runtime.getRuntime().addShutdownHook(destroyHook);
-        try {
-            return waitForExit(process, timeoutSeconds);
-        } finally {
-            Runtime.getRuntime().removeShutdownHook(destroyHook);
-        }
-    }
-
-    public static Process devDenoScript(Path workDir, Path nodeModules, String scriptContent, boolean debug)
-            throws IOException {
-        final Path denoBinary = getDenoBinary(nodeModules);
-        final Path scriptFile = prepareScript(workDir, scriptContent);
-
-        return startProcess(workDir, denoBinary, scriptFile, debug);
-    }
-
-    public static String formatScript(String template, Path workDir, BundleOptions bundleOptions) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        bundleOptions.plugins().forEach(p -> p.beforeBuild(workDir));
-        final String importPluginsJs = bundleOptions.plugins().stream().map(EsBuildPlugin::importScript)
-                .collect(Collectors.joining("\n"));
-        final String pluginsJs = mapper
-                .writeValueAsString(bundleOptions.plugins().stream().map(EsBuildPlugin::toMap).toList());
-        final String nodeModulesDir = workDir.relativize(bundleOptions.nodeModulesDir()).toString();
-        return template.formatted(importPluginsJs, nodeModulesDir, supportsColor().toString(), pluginsJs,
-                bundleOptions.esBuildConfig().toJson());
+        ProcessBuilder pb = new ProcessBuilder(runtime.command(nodeModules, scriptFile, debug));
+        pb.directory(workDir.toFile());
+        pb.environment().putAll(runtime.environment());
+        LOG.debugf("Running esbuild script ''%s'' ", workDir);
+        return pb.start();
     }
 
-    private static Boolean supportsColor() {
+    public static Boolean supportsColor() {
         return System.console() != null && System.getenv().get("TERM") != null;
     }
 
-    public static ScriptLog waitForExit(Process process, long timeoutSeconds) {
-        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+    /**
+     * Read the output of a process line by line on its own pump thread until the stream is closed.
+     *
+     * @param process the process to read from
+     * @param onLine the consumer of each line
+     * @return a future completed when the output stream is closed
+     */
+    public static CompletableFuture<Void> pump(Process process, Consumer<String> onLine) {
+        return pump(process.getInputStream(), onLine);
+    }
 
-        Future<ScriptLog> future = EXECUTOR.submit(() -> {
-            ScriptLog log = new ScriptLog();
-            try (reader) {
+    /**
+     * Read a stream line by line on its own pump thread until it is closed.
+     *
+     * @param stream the stream to read from
+     * @param onLine the consumer of each line
+     * @return a future completed when the stream is closed
+     */
+    public static CompletableFuture<Void> pump(InputStream stream, Consumer<String> onLine) {
+        return CompletableFuture.runAsync(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
                 String line;
-                while ((line = reader.readLine()) != null && process.isAlive()) {
-                    log.add(line);
+                while ((line = reader.readLine()) != null) {
+                    onLine.accept(line);
                 }
             } catch (IOException ignored) {
-                // Reader closed due to timeout or interruption
+                // Stream closed with the process
             }
-            return log;
-        });
-
-        return scriptLog(process, reader, future, true, timeoutSeconds);
-    }
-
-    private static void closeQuietly(Closeable closeable) {
-        try {
-            closeable.close();
-        } catch (IOException ignored) {
-        }
+        }, PUMPS);
     }
 
-    public static ScriptLog waitForResult(Process process, long timeoutSeconds) {
-        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-
-        Future<ScriptLog> future = EXECUTOR.submit(() -> {
-            ScriptLog log = new ScriptLog();
-            try {
-                String line;
-                while ((line = reader.readLine()) != null && process.isAlive()) {
-                    switch (line) {
-                        case "Deno is waiting for debugger to connect." -> {
-                            log.add(line);
-                            log.logAll();
-                            log.clear();
-                            continue;
-                        }
-                        case "--BUILD--" -> {
-                            continue;
-                        }
-                        case "--READY--", "--BUILD-SUCCESS--" -> {
-                            return log;
-                        }
-                        case "--BUILD-ERROR--" -> {
-                            log.logAll();
-                            throw new BundlingException("EsBuild Bundling failed", log);
-                        }
+    /**
+     * Read length prefixed frames (a 4 bytes big-endian length followed by the payload) on its own pump thread until the
+     * stream is closed.
+     *
+     * @param stream the stream to read from
+     * @param onFrame the consumer of each frame payload
+     * @return a future completed when the stream is closed, or completed exceptionally when a frame is invalid
+     */
+    public static CompletableFuture<Void> pumpFrames(InputStream stream, Consumer<byte[]> onFrame) {
+        return CompletableFuture.runAsync(() -> {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(stream))) {
+                while (true) {
+                    final int length;
+                    try {
+                        length = input.readInt();
+                    } catch (EOFException e) {
+                        return;
                     }
-                    log.add(line);
+                    if (length < 0 || length > MAX_FRAME_LENGTH) {
+                        throw new UncheckedIOException(new IOException("Invalid frame length: " + length));
+                    }
+                    final byte[] frame = new byte[length];
+                    input.readFully(frame);
+                    onFrame.accept(frame);
                 }
             } catch (IOException ignored) {
-                // Reader closed due to timeout or interruption
+                // Stream closed with the process
             }
-            return log;
-        });
-
-        return scriptLog(process, reader, future, false, timeoutSeconds);
-    }
-
-    private static ScriptLog scriptLog(Process process, BufferedReader reader, Future<ScriptLog> future, boolean waitForExit,
-            long timeoutSeconds) {
-        try {
-            ScriptLog log = timeoutSeconds > 0 ? future.get(timeoutSeconds, TimeUnit.SECONDS) : future.get();
-            if (waitForExit) {
-                boolean finished = process.waitFor(50, TimeUnit.MILLISECONDS);
-                int exitCode = finished ? process.exitValue() : -1;
-                if (exitCode != 0) {
-                    log.logAll();
-                    throw new BundlingException("EsBuild Bundling failed", log);
-                }
-            } else if (!process.isAlive()) {
-                log.logAll();
-                throw new RuntimeException("Bundling process exited unexpectedly");
-            }
-
-            return log;
-
-        } catch (TimeoutException | InterruptedException e) {
-            process.destroyForcibly();
-            future.cancel(true);
-            closeQuietly(reader);
-            if (e instanceof InterruptedException) {
-                Thread.currentThread().interrupt();
-                throw new RuntimeException("Bundling process was interrupted", e);
-            }
-            throw new BundlingException("Bundling timed out after " + timeoutSeconds + " seconds");
-
-        } catch (ExecutionException e) {
-            if (waitForExit) {
-                closeQuietly(reader);
-                process.destroy();
-            }
-            if (e.getCause() instanceof BundlingException) {
-                throw (BundlingException) e.getCause();
-            }
-            throw new RuntimeException("Bundling process exited unexpectedly", e);
-        }
-    }
-
-    private static Process startProcess(Path workDir, Path denoBinary, Path scriptFile, boolean debug)
-            throws IOException {
-        final List<String> args = new ArrayList<>(List.of(
-                denoBinary.toAbsolutePath().toString(),
-                "run",
-                "-R",
-                "-W=.",
-                "--allow-ffi",
-                "--allow-env",
-                "--allow-sys",
-                "--allow-run",
-                "--node-modules-dir=manual"));
-        if (debug) {
-            args.add("--inspect-wait");
-        }
-
-        args.add(scriptFile.toAbsolutePath().toString());
-        ProcessBuilder pb = new ProcessBuilder(args);
-        pb.directory(workDir.toFile());
-        LOG.debugf("Running esbuild script ''%s'' ", workDir);
-        pb.redirectErrorStream(true);
-        Process process = pb.start();
-        return process;
-    }
-
-    private static Path prepareScript(Path workDir, String scriptContent) throws IOException {
-        Path scriptFile = workDir.resolve("build.js");
-        Files.write(scriptFile, scriptContent.getBytes());
-        return scriptFile;
+        }, PUMPS);
     }
 
-    private static Path getDenoBinary(Path nodeModules) {
+    public static Path getDenoBinary(Path nodeModules) {
         final String classifier = determineClassifier();
         final String name = DENO_BINARIES.get(classifier);
         Path denoBinary = nodeModules
@@ -225,7 +126,7 @@ public class DenoRunner {
         return denoBinary;
     }
 
-    private static String determineClassifier() {
+    public static String determineClassifier() {
         final String osName = System.getProperty("os.name").toLowerCase();
         final String osArch = System.getProperty("os.arch").toLowerCase();
         String classifier = null;
@@ -254,7 +155,7 @@ public class DenoRunner {
         return classifier;
     }
 
-    private static boolean isWindows() {
+    public static boolean isWindows() {
         return System.getProperty("os.name").toLowerCase().contains("win");
     }
 
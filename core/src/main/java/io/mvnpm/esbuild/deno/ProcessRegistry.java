@@ -0,0 +1,324 @@
+package io.mvnpm.esbuild.deno;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.logging.Logger;
+
+import io.mvnpm.esbuild.util.ProcessStats;
+
+/**
+ * Tracks the long-lived child processes (e.g. the dev processes) with their resident memory and last use, and evicts the
+ * least recently used ones when an idle or memory budget is exceeded. An evicted process is closed, its owner starts a new
+ * one when it is used again.
+ * <p>
+ * The budgets are disabled when lower or equal to 0. The processes of the shared registry are checked periodically and
+ * when a process is registered. The registrations hosted by the same process (e.g. the contexts of the shared esbuild
+ * service) count its memory once, they are not evicted for memory unless it frees the process.
+ */
+public class ProcessRegistry {
+    public static final String MAX_IDLE_SECONDS_PROPERTY = "esbuild-java.processes.max-idle-seconds";
+    public static final String MAX_MEMORY_MB_PROPERTY = "esbuild-java.processes.max-memory-mb";
+    private static final Logger LOG = Logger.getLogger(ProcessRegistry.class);
+    private static final Duration CHECK_INTERVAL = Duration.ofSeconds(10);
+    private static volatile ProcessRegistry shared;
+
+    /**
+     * A registered process.
+     */
+    public interface Evictable {
+        /**
+         * @return the running process, empty if not running
+         */
+        Optional<ProcessHandle> processHandle();
+
+        /**
+         * Close the process, it is not used and its registration is closed by the registry.
+         */
+        void evict();
+    }
+
+    /**
+     * @param name the name of the process (e.g. its work directory)
+     * @param pid the pid of the process, -1 if not running
+     * @param rssBytes the resident memory of the process and its descendants, -1 if unknown
+     * @param idle the time since the process was last used, zero while in use
+     */
+    public record ProcessInfo(String name, long pid, long rssBytes, Duration idle) {
+    }
+
+    private final Duration maxIdle;
+    private final long maxMemoryBytes;
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+    private long evictions;
+
+    /**
+     * @param maxIdle the time after which an unused process is evicted, disabled if null or lower or equal to 0
+     * @param maxMemoryBytes the memory budget of the processes, the most recently used process is kept whatever its
+     *        memory, disabled if lower or equal to 0
+     */
+    public ProcessRegistry(Duration maxIdle, long maxMemoryBytes) {
+        this.maxIdle = maxIdle == null || maxIdle.isNegative() ? Duration.ZERO : maxIdle;
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+
+    /**
+     * @return the registry of the dev processes started by {@link io.mvnpm.esbuild.Bundler}, its budgets are read from the
+     *         {@value #MAX_IDLE_SECONDS_PROPERTY} and {@value #MAX_MEMORY_MB_PROPERTY} system properties (disabled by
+     *         default)
+     */
+    public static ProcessRegistry shared() {
+        ProcessRegistry registry = shared;
+        if (registry == null) {
+            synchronized (ProcessRegistry.class) {
+                registry = shared;
+                if (registry == null) {
+                    registry = new ProcessRegistry(Duration.ofSeconds(Long.getLong(MAX_IDLE_SECONDS_PROPERTY, 0)),
+                            Long.getLong(MAX_MEMORY_MB_PROPERTY, 0) * 1024 * 1024);
+                    if (registry.hasBudget()) {
+                        final ProcessRegistry checked = registry;
+                        final ScheduledExecutorService checker = Executors.newSingleThreadScheduledExecutor(r -> {
+                            final Thread t = new Thread(r, "esbuild-process-registry");
+                            t.setDaemon(true);
+                            return t;
+                        });
+                        checker.scheduleWithFixedDelay(checked::enforce, CHECK_INTERVAL.toMillis(),
+                                CHECK_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+                    }
+                    shared = registry;
+                }
+            }
+        }
+        return registry;
+    }
+
+    private boolean hasBudget() {
+        return !maxIdle.isZero() || maxMemoryBytes > 0;
+    }
+
+    /**
+     * Track a process, it is in use until {@link Registration#release()} is called.
+     *
+     * @param name the name of the process, for the logs
+     * @param process the process
+     * @return the registration, to close when the process is closed by its owner
+     */
+    public Registration register(String name, Evictable process) {
+        final Registration registration = new Registration(name, process);
+        registrations.add(registration);
+        if (maxMemoryBytes > 0) {
+            // Not on the caller thread, the owner of the new process may hold its lock
+            CompletableFuture.runAsync(this::enforce);
+        }
+        return registration;
+    }
+
+    /**
+     * @return the tracked processes, from the most to the least recently used
+     */
+    public List<ProcessInfo> processes() {
+        final long now = System.nanoTime();
+        return byLastUse().stream().map(u -> u.registration.info(now)).toList();
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Evict the processes idle for longer than the idle budget, then the least recently used ones until the memory of the
+     * processes fits in the memory budget. The processes in use are never evicted.
+     */
+    public void enforce() {
+        if (!hasBudget()) {
+            return;
+        }
+        final long now = System.nanoTime();
+        final List<Use> uses = byLastUse();
+        // The registrations hosted by the same process (e.g. the contexts of the shared esbuild service) share its memory,
+        // it is counted once and only freed once all of them are evicted
+        final Map<Long, Integer> sharing = new HashMap<>();
+        final Map<Long, Long> rssByPid = new HashMap<>();
+        for (Use use : uses) {
+            if (use.pid >= 0) {
+                sharing.merge(use.pid, 1, Integer::sum);
+                if (maxMemoryBytes > 0) {
+                    rssByPid.computeIfAbsent(use.pid, pid -> use.registration.rss());
+                }
+            }
+        }
+        long memory = rssByPid.values().stream().mapToLong(Long::longValue).sum();
+        final List<Use> candidates = new ArrayList<>();
+        for (int i = 0; i < uses.size(); i++) {
+            final Use use = uses.get(i);
+            if (use.inUse) {
+                continue;
+            }
+            if (!maxIdle.isZero() && now - use.lastUsed > maxIdle.toNanos()) {
+                if (evict(use)) {
+                    LOG.debugf("Evicted the process ''%s'', idle for %ds", use.registration.name,
+                            Duration.ofNanos(now - use.lastUsed).toSeconds());
+                    memory -= released(use, sharing, rssByPid);
+                }
+            } else if (i > 0) {
+                // The most recently used process is kept whatever its memory
+                candidates.add(use);
+            }
+        }
+        // The least recently used first
+        for (int i = candidates.size() - 1; i >= 0 && maxMemoryBytes > 0 && memory > maxMemoryBytes; i--) {
+            final Use use = candidates.get(i);
+            if (use.pid < 0 || sharing.getOrDefault(use.pid, 0) > 1) {
+                // Evicting it would not free its process
+                continue;
+            }
+            if (evict(use)) {
+                final long rss = released(use, sharing, rssByPid);
+                LOG.debugf("Evicted the process ''%s'' (%d bytes), the processes used %d bytes out of %d",
+                        use.registration.name, rss, memory, maxMemoryBytes);
+                memory -= rss;
+            }
+        }
+    }
+
+    /**
+     * @return the memory freed by the eviction, the memory of its process once it hosts no other registration
+     */
+    private static long released(Use use, Map<Long, Integer> sharing, Map<Long, Long> rssByPid) {
+        if (use.pid < 0) {
+            return 0;
+        }
+        final int remaining = sharing.merge(use.pid, -1, Integer::sum);
+        return remaining > 0 ? 0 : rssByPid.getOrDefault(use.pid, 0L);
+    }
+
+    /**
+     * @return false if the process has been used since the check
+     */
+    private boolean evict(Use use) {
+        final Registration registration = use.registration;
+        synchronized (registration) {
+            if (registration.users > 0 || registration.lastUsed != use.lastUsed || !registrations.remove(registration)) {
+                return false;
+            }
+            registration.closed = true;
+        }
+        synchronized (this) {
+            evictions++;
+        }
+        try {
+            registration.process.evict();
+        } catch (RuntimeException e) {
+            LOG.debugf("Could not evict the process ''%s'': %s", registration.name, e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * @return a consistent snapshot of the uses of the processes, from the most to the least recently used
+     */
+    private List<Use> byLastUse() {
+        final List<Use> uses = new ArrayList<>();
+        for (Registration registration : registrations) {
+            final boolean inUse;
+            final long lastUsed;
+            synchronized (registration) {
+                inUse = registration.users > 0;
+                lastUsed = registration.lastUsed;
+            }
+            uses.add(new Use(registration, inUse, lastUsed, registration.pid()));
+        }
+        uses.sort(Comparator.comparingLong((Use u) -> u.inUse ? Long.MAX_VALUE : u.lastUsed).reversed());
+        return uses;
+    }
+
+    private record Use(Registration registration, boolean inUse, long lastUsed, long pid) {
+    }
+
+    /**
+     * The registration of a process, its owner marks the uses of the process.
+     */
+    public final class Registration implements Closeable {
+        private final String name;
+        private final Evictable process;
+        private volatile long lastUsed = System.nanoTime();
+        private int users = 1;
+        private boolean closed;
+
+        private Registration(String name, Evictable process) {
+            this.name = name;
+            this.process = process;
+        }
+
+        /**
+         * Mark the process in use, it can't be evicted until released.
+         *
+         * @return false if the process has already been evicted
+         */
+        public synchronized boolean acquire() {
+            if (closed) {
+                return false;
+            }
+            users++;
+            lastUsed = System.nanoTime();
+            return true;
+        }
+
+        /**
+         * Mark the end of a use of the process.
+         */
+        public synchronized void release() {
+            users = Math.max(0, users - 1);
+            lastUsed = System.nanoTime();
+        }
+
+        /**
+         * @return true once evicted or closed
+         */
+        public synchronized boolean isClosed() {
+            return closed;
+        }
+
+        private synchronized boolean inUse() {
+            return users > 0;
+        }
+
+        private long pid() {
+            return process.processHandle().map(ProcessHandle::pid).orElse(-1L);
+        }
+
+        private long rss() {
+            return process.processHandle().map(ProcessStats::rss).orElse(OptionalLong.empty()).orElse(0);
+        }
+
+        private ProcessInfo info(long now) {
+            final Optional<ProcessHandle> handle = process.processHandle();
+            return new ProcessInfo(name, handle.map(ProcessHandle::pid).orElse(-1L),
+                    handle.map(ProcessStats::rss).orElse(OptionalLong.empty()).orElse(-1),
+                    inUse() ? Duration.ZERO : Duration.ofNanos(now - lastUsed));
+        }
+
+        /**
+         * Stop tracking the process.
+         */
+        @Override
+        public void close() {
+            synchronized (this) {
+                closed = true;
+            }
+            registrations.remove(this);
+        }
+    }
+}
@@ -40,6 +40,13 @@ public class ScriptLog {
         messages.add(new LogMessage(level, message.replace("<br>", "\n")));
     }
 
+    public void add(Logger.Level level, String message) {
+        if (message == null || message.isBlank())
+            return;
+
+        messages.add(new LogMessage(level, message.trim()));
+    }
+
     public void logAll() {
         for (LogMessage message : messages) {
             LOG.log(message.level, message.message);
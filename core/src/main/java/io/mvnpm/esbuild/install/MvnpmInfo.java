@@ -1,11 +1,86 @@
 package io.mvnpm.esbuild.install;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
-public record MvnpmInfo(Set<InstalledDependency> installed) {
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+/**
+ * @param installed the installed dependencies
+ * @param fingerprints the fingerprints of the installed jars by dependency id, a dependency is installed again when its
+ *        jar changed (e.g. a SNAPSHOT)
+ */
+public record MvnpmInfo(Set<InstalledDependency> installed, Map<String, Fingerprint> fingerprints) {
+
+    @JsonCreator
+    public MvnpmInfo {
+        // Written by a previous version
+        fingerprints = fingerprints == null ? Map.of() : fingerprints;
+    }
+
+    public MvnpmInfo(Set<InstalledDependency> installed) {
+        this(installed, Map.of());
+    }
 
     public record InstalledDependency(String id, List<String> dirs) {
 
     }
+
+    /**
+     * @param size the size of the jar
+     * @param lastModified the last modification time of the jar, in milliseconds
+     * @param hash the SHA-1 of the jar, or null if unknown
+     */
+    public record Fingerprint(long size, long lastModified, String hash) {
+
+        /**
+         * @param jar the jar
+         * @param computeHash if the hash should be computed when there is no .sha1 file next to the jar
+         * @return the fingerprint of the jar, or null if it does not exist
+         */
+        public static Fingerprint of(Path jar, boolean computeHash) throws IOException {
+            final Fingerprint file = ofFile(jar);
+            if (file == null) {
+                return null;
+            }
+            final String hash = computeHash ? PackageStore.checksum(jar) : PackageStore.sidecarChecksum(jar).orElse(null);
+            return new Fingerprint(file.size, file.lastModified, hash);
+        }
+
+        /**
+         * @return the fingerprint of the jar without hash, or null if it does not exist
+         */
+        public static Fingerprint ofFile(Path jar) throws IOException {
+            try {
+                final BasicFileAttributes attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+                return new Fingerprint(attributes.size(), attributes.lastModifiedTime().toMillis(), null);
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+        }
+
+        /**
+         * @return true if the size and modification time are the same
+         */
+        public boolean sameFile(Fingerprint other) {
+            return other != null && size == other.size && lastModified == other.lastModified;
+        }
+
+        /**
+         * @return true if the jars have the same content, from their hash when they were modified
+         */
+        public boolean sameContent(Fingerprint other) {
+            if (sameFile(other)) {
+                return true;
+            }
+            return other != null && hash != null && size == other.size && Objects.equals(hash, other.hash);
+        }
+    }
 }
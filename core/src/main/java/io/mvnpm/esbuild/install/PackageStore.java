@@ -0,0 +1,201 @@
+package io.mvnpm.esbuild.install;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.jboss.logging.Logger;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.mvnpm.esbuild.model.WebDependency;
+import io.mvnpm.esbuild.util.PathUtils;
+
+/**
+ * A user-level store of the extracted packages, shared by all the node_modules directories of the machine (like pnpm's
+ * store). The packages of a jar are extracted once per jar content, then hardlinked into each node_modules directory.
+ * <p>
+ * The entries are keyed by the dependency id and the SHA-1 of the jar (read from the <code>.sha1</code> file next to it in
+ * the Maven repository when there is one), they are never modified once written. The files are copied when they can't be
+ * hardlinked (e.g. another file system), the installed files must not be modified in place.
+ */
+public final class PackageStore {
+
+    /**
+     * The system property enabling the store: <code>true</code> for the default location
+     * (<code>~/.esbuild-java/store</code>) or the store directory, disabled by default.
+     */
+    public static final String STORE_PROPERTY = "esbuild-java.package-store";
+
+    private static final Logger LOG = Logger.getLogger(PackageStore.class);
+    private static final String ENTRY_FILE = "store.json";
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final Path root;
+
+    public PackageStore(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * @return the store enabled by the {@value #STORE_PROPERTY} system property, if any
+     */
+    public static Optional<PackageStore> configured() {
+        final String configured = System.getProperty(STORE_PROPERTY, "").trim();
+        if (configured.isEmpty() || configured.equalsIgnoreCase("false")) {
+            return Optional.empty();
+        }
+        if (configured.equalsIgnoreCase("true")) {
+            return Optional.of(new PackageStore(Path.of(System.getProperty("user.home"), ".esbuild-java", "store")));
+        }
+        return Optional.of(new PackageStore(Path.of(configured)));
+    }
+
+    public Path root() {
+        return root;
+    }
+
+    /**
+     * Extracts the packages of a dependency into a node_modules directory.
+     */
+    @FunctionalInterface
+    interface Extractor {
+        /**
+         * @return the package directories, empty if the dependency has no package
+         */
+        Optional<List<String>> extract(Path nodeModulesDir) throws IOException;
+    }
+
+    /**
+     * The extracted packages of a jar.
+     *
+     * @param dir the node_modules directory of the entry
+     * @param packages the package directories, relative to the node_modules directory
+     */
+    record Entry(Path dir, List<String> packages) {
+    }
+
+    /**
+     * @return the entry of the dependency, extracted into the store when missing, empty if the dependency has no package
+     */
+    Optional<Entry> entry(WebDependency dep, Extractor extractor) throws IOException {
+        final Path dir = root.resolve(key(dep));
+        final Optional<Entry> existing = read(dir);
+        if (existing.isPresent()) {
+            return existing;
+        }
+        Files.createDirectories(root.resolve(".tmp"));
+        final Path staging = Files.createTempDirectory(root.resolve(".tmp"), "entry");
+        try {
+            final Optional<List<String>> packages = extractor.extract(staging);
+            if (packages.isEmpty()) {
+                return Optional.empty();
+            }
+            mapper.writeValue(staging.resolve(ENTRY_FILE).toFile(), packages.get());
+            Files.createDirectories(dir.getParent());
+            try {
+                Files.move(staging, dir, StandardCopyOption.ATOMIC_MOVE);
+                LOG.debugf("stored dep ''%s'' in ''%s''", dep.id(), dir);
+            } catch (AtomicMoveNotSupportedException e) {
+                PathUtils.safeMove(staging, dir);
+            } catch (FileSystemException e) {
+                // Stored concurrently by another installation ("Directory not empty" on Linux)
+                final Optional<Entry> stored = read(dir);
+                if (stored.isEmpty()) {
+                    throw e;
+                }
+                LOG.debugf("dep ''%s'' was stored concurrently in ''%s''", dep.id(), dir);
+                return stored;
+            }
+            return read(dir);
+        } finally {
+            PathUtils.deleteRecursive(staging);
+        }
+    }
+
+    private static Optional<Entry> read(Path dir) throws IOException {
+        final Path file = dir.resolve(ENTRY_FILE);
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        final List<String> packages = mapper.readValue(file.toFile(), new TypeReference<List<String>>() {
+        });
+        return Optional.of(new Entry(dir, packages));
+    }
+
+    /**
+     * @return the relative directory of the entry of the dependency
+     */
+    static String key(WebDependency dep) throws IOException {
+        final String id = dep.id().replace(":", "/").replaceAll("[^A-Za-z0-9._/@-]", "_");
+        return id + "/" + checksum(dep.path()) + "-" + Files.size(dep.path());
+    }
+
+    /**
+     * @return the SHA-1 of the jar, from the .sha1 file next to it if any
+     */
+    static String checksum(Path jar) throws IOException {
+        final Optional<String> sidecar = sidecarChecksum(jar);
+        if (sidecar.isPresent()) {
+            return sidecar.get();
+        }
+        try (InputStream is = Files.newInputStream(jar)) {
+            final MessageDigest md = MessageDigest.getInstance("SHA-1");
+            final byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = is.read(buffer)) >= 0) {
+                md.update(buffer, 0, read);
+            }
+            return HexFormat.of().formatHex(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the SHA-1 of the jar from the .sha1 file written next to it by Maven, if any and not older than the jar (a
+     *         locally installed SNAPSHOT does not update it)
+     */
+    static Optional<String> sidecarChecksum(Path jar) throws IOException {
+        final Path sha1File = jar.resolveSibling(jar.getFileName() + ".sha1");
+        if (Files.isRegularFile(sha1File)
+                && Files.getLastModifiedTime(sha1File).compareTo(Files.getLastModifiedTime(jar)) >= 0) {
+            final String sha1 = Files.readString(sha1File).trim().split("\\s+")[0];
+            if (sha1.matches("[0-9a-fA-F]{40}")) {
+                return Optional.of(sha1.toLowerCase());
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Hardlink the files of the source directory into the target directory, or copy them if they can't be linked.
+     */
+    static void link(Path source, Path target) throws IOException {
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (Path path : paths.toList()) {
+                final Path targetPath = target.resolve(source.relativize(path).toString());
+                if (Files.isDirectory(path)) {
+                    Files.createDirectories(targetPath);
+                    continue;
+                }
+                try {
+                    Files.createLink(targetPath, path);
+                } catch (FileSystemException | UnsupportedOperationException e) {
+                    Files.copy(path, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+                }
+            }
+        }
+    }
+}
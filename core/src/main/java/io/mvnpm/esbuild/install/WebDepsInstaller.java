@@ -5,15 +5,28 @@ import static io.mvnpm.esbuild.util.JarInspector.findMvnpmMoreArchive;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.zip.ZipFile;
 
 import org.jboss.logging.Logger;
 
@@ -24,6 +37,7 @@ import io.mvnpm.esbuild.model.WebDependency;
 import io.mvnpm.esbuild.util.Archives;
 import io.mvnpm.esbuild.util.JarInspector;
 import io.mvnpm.esbuild.util.PathUtils;
+import io.mvnpm.esbuild.util.Trash;
 
 public final class WebDepsInstaller {
 
@@ -31,14 +45,55 @@ public final class WebDepsInstaller {
 
     private static final String MVNPM_DIR = ".mvnpm";
 
+    /**
+     * The system property setting the number of dependencies installed in parallel, the number of processors by default.
+     */
+    public static final String INSTALL_THREADS_PROPERTY = "esbuild-java.install.threads";
+
+    /**
+     * The system property enabling the SHA-1 of the jars in mvnpm.json when there is no .sha1 file next to them, a jar
+     * which is modified with the same content is then not installed again.
+     */
+    public static final String CONTENT_HASH_PROPERTY = "esbuild-java.install.content-hash";
+
     private static final ObjectMapper mapper = new ObjectMapper();
 
+    // The last installation of each node_modules directory, to skip the installations when nothing changed
+    private static final Map<Path, InstallState> LAST_INSTALLS = new ConcurrentHashMap<>();
+
+    /**
+     * Install the dependencies in the node_modules directory, the dependencies which are not installed yet are installed in
+     * parallel (see {@link #INSTALL_THREADS_PROPERTY}).
+     * <p>
+     * When several dependencies contain the same package, the last one in the list is installed, as when installing them
+     * one by one.
+     *
+     * @return true if the node_modules directory changed
+     */
     public static boolean install(Path nodeModulesDir, List<WebDependency> dependencies) throws IOException {
+        return install(nodeModulesDir, dependencies, PackageStore.configured().orElse(null));
+    }
+
+    /**
+     * Same as {@link #install(Path, List)}, the packages are linked from the store if any.
+     *
+     * @param store the store of the extracted packages (see {@link PackageStore}), or null to extract them in the
+     *        node_modules directory
+     * @return true if the node_modules directory changed
+     */
+    public static boolean install(Path nodeModulesDir, List<WebDependency> dependencies, PackageStore store)
+            throws IOException {
         final Path mvnpmInfoFile = getMvnpmInfoPath(nodeModulesDir);
+        final Path installKey = nodeModulesDir.toAbsolutePath().normalize();
+        if (!dependencies.isEmpty() && isUpToDate(installKey, mvnpmInfoFile, dependencies)) {
+            LOG.debugf("skipping install as nothing changed in ''%s''", nodeModulesDir);
+            return false;
+        }
+        LAST_INSTALLS.remove(installKey);
         final MvnpmInfo mvnpmInfo = readMvnpmInfo(mvnpmInfoFile);
         if (mvnpmInfo.installed().isEmpty() || dependencies.isEmpty()) {
             // Make sure it is clean
-            PathUtils.deleteRecursive(nodeModulesDir);
+            Trash.delete(nodeModulesDir);
         }
         if (dependencies.isEmpty()) {
             return true;
@@ -47,72 +102,341 @@ public final class WebDepsInstaller {
             Files.createDirectories(nodeModulesDir);
         }
         final Path tmp = nodeModulesDir.resolve(MVNPM_DIR).resolve("tmp");
+        final boolean contentHash = Boolean.getBoolean(CONTENT_HASH_PROPERTY);
+        final Map<String, MvnpmInfo.InstalledDependency> installedById = new HashMap<>();
+        mvnpmInfo.installed().forEach(i -> installedById.putIfAbsent(i.id(), i));
         final Set<MvnpmInfo.InstalledDependency> installed = new HashSet<>();
-        boolean changed = false;
+        final Map<String, MvnpmInfo.Fingerprint> fingerprints = new HashMap<>();
+        final List<WebDependency> toInstall = new ArrayList<>();
         for (WebDependency dep : dependencies) {
-            final Optional<MvnpmInfo.InstalledDependency> alreadyInstalled = mvnpmInfo.installed().stream()
-                    .filter(i -> i.id().equals(dep.id())).findFirst();
-            if (alreadyInstalled.isPresent()) {
-                LOG.debugf("skipping package as it already exists ''%s''", dep.id());
-                installed.add(alreadyInstalled.get());
-                continue;
-            }
-            changed = true;
-            final Path extractDir = tmp.resolve(dep.id().replace(":", "/"));
-            PathUtils.deleteRecursive(extractDir);
-            Archives.unzip(dep.path(), extractDir);
-            if (dep.type() == WebDependency.WebDependencyType.MVNPM) {
-                final Path mvnpmMoreArchive = findMvnpmMoreArchive(extractDir);
-                if (mvnpmMoreArchive != null) {
-                    LOG.debugf("Found more archive ''%s''", mvnpmMoreArchive);
-                    try {
-                        Archives.unTgz(mvnpmMoreArchive, mvnpmMoreArchive.getParent());
-                    } catch (IOException e) {
-                        LOG.warnf("Could not extract .more.tgz archive '%s'", mvnpmMoreArchive, e);
+            final MvnpmInfo.InstalledDependency alreadyInstalled = installedById.get(dep.id());
+            final MvnpmInfo.Fingerprint previous = mvnpmInfo.fingerprints().get(dep.id());
+            final MvnpmInfo.Fingerprint current = MvnpmInfo.Fingerprint.ofFile(dep.path());
+            if (alreadyInstalled != null) {
+                if (current == null || current.sameFile(previous)) {
+                    LOG.debugf("skipping package as it already exists ''%s''", dep.id());
+                    installed.add(alreadyInstalled);
+                    if (previous != null) {
+                        fingerprints.put(dep.id(), previous);
                     }
+                    continue;
                 }
-            }
-            final Map<String, Path> packageNameAndRoot = JarInspector.findPackageNameAndRoot(dep.id(), extractDir, dep.type());
-            List<String> dirs = new ArrayList<>();
-            if (!packageNameAndRoot.isEmpty()) {
-                for (Map.Entry<String, Path> nameAndRoot : packageNameAndRoot.entrySet()) {
-                    final String packageName = nameAndRoot.getKey();
-                    final Path source = nameAndRoot.getValue();
-                    final Path target = nodeModulesDir.resolve(packageName);
-                    if (!Files.isDirectory(source)) {
-                        LOG.debugf("ignored package ''%s'' probably installed through another package.json", packageName);
+                if (previous != null && previous.hash() != null) {
+                    final MvnpmInfo.Fingerprint hashed = MvnpmInfo.Fingerprint.of(dep.path(), true);
+                    if (hashed.sameContent(previous)) {
+                        LOG.debugf("skipping package as its content did not change ''%s''", dep.id());
+                        installed.add(alreadyInstalled);
+                        fingerprints.put(dep.id(), hashed);
                         continue;
                     }
-                    dirs.add(packageName);
-                    PathUtils.deleteRecursive(target);
-                    Files.createDirectories(target.getParent());
-                    PathUtils.safeMove(source, target);
-                    LOG.debugf("installed package ''%s''", packageName);
                 }
-                installed.add(new MvnpmInfo.InstalledDependency(dep.id(), dirs));
-                LOG.debugf("installed dep ''%s'' (''%s}'')", new Object[] { dep.path(), dep.id() });
-            } else {
-                LOG.warnf("package.json not found in dep: ''%s'' (''%s'')",
-                        new Object[] { dep.path(), dep.id() });
+                LOG.debugf("installing package again as its jar changed ''%s''", dep.id());
             }
+            if (current != null) {
+                fingerprints.put(dep.id(), MvnpmInfo.Fingerprint.of(dep.path(), contentHash));
+            }
+            toInstall.add(dep);
         }
+        boolean changed = !toInstall.isEmpty();
+        installed.addAll(installAll(nodeModulesDir, tmp, toInstall, store));
         PathUtils.deleteRecursive(tmp);
         Set<String> installedDirs = installed.stream().flatMap(i -> i.dirs().stream()).collect(Collectors.toSet());
         Set<String> legacyDirs = mvnpmInfo.installed().stream().flatMap(i -> i.dirs().stream())
                 .collect(Collectors.toSet());
         // we are not deleting all the legacy dependencies, some of the dirs might still be used by new ones (e.g version or classifier change).
+        final Path trash = nodeModulesDir.resolve(MVNPM_DIR).resolve(Trash.TRASH_DIR);
         for (String legacyDir : legacyDirs) {
             if (!installedDirs.contains(legacyDir)) {
                 changed = true;
                 LOG.debugf("removing package as it is not needed anymore ''%s''", legacyDir);
-                PathUtils.deleteRecursive(nodeModulesDir.resolve(legacyDir));
+                Trash.delete(nodeModulesDir.resolve(legacyDir), trash);
             }
         }
-        final MvnpmInfo newMvnpmInfo = new MvnpmInfo(installed);
+        final Set<String> installedIds = installed.stream().map(MvnpmInfo.InstalledDependency::id)
+                .collect(Collectors.toSet());
+        fingerprints.keySet().retainAll(installedIds);
+        final MvnpmInfo newMvnpmInfo = new MvnpmInfo(installed, fingerprints);
         WebDepsInstaller.writeMvnpmInfo(mvnpmInfoFile, newMvnpmInfo);
+        rememberInstall(installKey, mvnpmInfoFile, dependencies, fingerprints);
         return changed;
     }
 
+    /**
+     * @return true if the same dependencies were installed by this JVM and neither their jars nor the installation changed
+     *         since, only the file attributes are read
+     */
+    private static boolean isUpToDate(Path installKey, Path mvnpmInfoFile, List<WebDependency> dependencies) {
+        final InstallState last = LAST_INSTALLS.get(installKey);
+        if (last == null || last.dependencies().size() != dependencies.size()) {
+            return false;
+        }
+        try {
+            if (!Files.getLastModifiedTime(mvnpmInfoFile).equals(last.infoLastModified())) {
+                return false;
+            }
+            for (int i = 0; i < dependencies.size(); i++) {
+                final WebDependency dep = dependencies.get(i);
+                final InstallState.Installed installed = last.dependencies().get(i);
+                if (!dep.id().equals(installed.id()) || !dep.path().equals(installed.path())
+                        || !installed.fingerprint().sameFile(MvnpmInfo.Fingerprint.ofFile(dep.path()))) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void rememberInstall(Path installKey, Path mvnpmInfoFile, List<WebDependency> dependencies,
+            Map<String, MvnpmInfo.Fingerprint> fingerprints) throws IOException {
+        final List<InstallState.Installed> installed = new ArrayList<>();
+        for (WebDependency dep : dependencies) {
+            final MvnpmInfo.Fingerprint fingerprint = fingerprints.get(dep.id());
+            if (fingerprint == null) {
+                // Missing jar or no package, checked again on the next install
+                return;
+            }
+            installed.add(new InstallState.Installed(dep.id(), dep.path(), fingerprint));
+        }
+        LAST_INSTALLS.put(installKey, new InstallState(installed, Files.getLastModifiedTime(mvnpmInfoFile)));
+    }
+
+    /**
+     * The last installation of a node_modules directory by this JVM.
+     */
+    private record InstallState(List<Installed> dependencies, FileTime infoLastModified) {
+        private record Installed(String id, Path path, MvnpmInfo.Fingerprint fingerprint) {
+        }
+    }
+
+    private static List<MvnpmInfo.InstalledDependency> installAll(Path nodeModulesDir, Path tmp,
+            List<WebDependency> dependencies, PackageStore store) throws IOException {
+        if (dependencies.isEmpty()) {
+            return List.of();
+        }
+        final long start = System.nanoTime();
+        final int threads = Math.max(1, Math.min(dependencies.size(),
+                Integer.getInteger(INSTALL_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors())));
+        final AtomicInteger counter = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            t.setName("WebDepsInstaller-" + counter.incrementAndGet());
+            return t;
+        });
+        // The dependency which installed each package directory, the last one in the list wins
+        final Map<String, Owner> owners = new ConcurrentHashMap<>();
+        final List<Future<Installation>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < dependencies.size(); i++) {
+                final WebDependency dep = dependencies.get(i);
+                final int index = i;
+                futures.add(executor.submit(() -> store != null ? installFromStore(nodeModulesDir, store, dep, index, owners)
+                        : installDependency(nodeModulesDir, tmp, dep, index, owners)));
+            }
+            final List<MvnpmInfo.InstalledDependency> installed = new ArrayList<>();
+            final List<Installation> installations = new ArrayList<>();
+            for (Future<Installation> future : futures) {
+                final Installation installation = future.get();
+                installations.add(installation);
+                installation.installed().ifPresent(installed::add);
+            }
+            if (LOG.isDebugEnabled()) {
+                final Installation slowest = installations.stream()
+                        .max(Comparator.comparingLong(Installation::totalMillis)).orElseThrow();
+                LOG.debugf("installed %d deps in %dms on %d threads, the slowest is ''%s'' (%dms)", installations.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), threads, slowest.id(),
+                        slowest.totalMillis());
+            }
+            return installed;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Installation of the dependencies was interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Installation installDependency(Path nodeModulesDir, Path tmp, WebDependency dep, int index,
+            Map<String, Owner> owners) throws IOException {
+        final Optional<Installation> fromJar = installFromJar(nodeModulesDir, dep, index, owners);
+        if (fromJar.isPresent()) {
+            return fromJar.get();
+        }
+        final long start = System.nanoTime();
+        final Path extractDir = tmp.resolve(dep.id().replace(":", "/"));
+        PathUtils.deleteRecursive(extractDir);
+        Archives.unzip(dep.path(), extractDir);
+        if (dep.type() == WebDependency.WebDependencyType.MVNPM) {
+            final Path mvnpmMoreArchive = findMvnpmMoreArchive(extractDir);
+            if (mvnpmMoreArchive != null) {
+                LOG.debugf("Found more archive ''%s''", mvnpmMoreArchive);
+                try {
+                    Archives.unTgz(mvnpmMoreArchive, mvnpmMoreArchive.getParent());
+                } catch (IOException e) {
+                    LOG.warnf("Could not extract .more.tgz archive '%s'", mvnpmMoreArchive, e);
+                }
+            }
+        }
+        final long extracted = System.nanoTime();
+        final Map<String, Path> packageNameAndRoot = JarInspector.findPackageNameAndRoot(dep.id(), extractDir, dep.type());
+        final long inspected = System.nanoTime();
+        if (packageNameAndRoot.isEmpty()) {
+            LOG.warnf("package.json not found in dep: ''%s'' (''%s'')",
+                    new Object[] { dep.path(), dep.id() });
+            return new Installation(dep.id(), Optional.empty(), millis(start, extracted), millis(extracted, inspected), 0);
+        }
+        List<String> dirs = new ArrayList<>();
+        for (Map.Entry<String, Path> nameAndRoot : packageNameAndRoot.entrySet()) {
+            final String packageName = nameAndRoot.getKey();
+            final Path source = nameAndRoot.getValue();
+            if (!Files.isDirectory(source)) {
+                LOG.debugf("ignored package ''%s'' probably installed through another package.json", packageName);
+                continue;
+            }
+            dirs.add(packageName);
+            writePackage(nodeModulesDir, dep, packageName, index, owners, target -> PathUtils.safeMove(source, target));
+        }
+        final long end = System.nanoTime();
+        LOG.debugf("installed dep ''%s'' (''%s'') in %dms (extract: %dms, inspect: %dms, move: %dms)",
+                new Object[] { dep.path(), dep.id(), millis(start, end), millis(start, extracted), millis(extracted, inspected),
+                        millis(inspected, end) });
+        return new Installation(dep.id(), Optional.of(new MvnpmInfo.InstalledDependency(dep.id(), dirs)),
+                millis(start, extracted), millis(extracted, inspected), millis(inspected, end));
+    }
+
+    /**
+     * Link the packages from the store, they are extracted into it first if needed.
+     */
+    private static Installation installFromStore(Path nodeModulesDir, PackageStore store, WebDependency dep, int index,
+            Map<String, Owner> owners) throws IOException {
+        final long start = System.nanoTime();
+        final Optional<PackageStore.Entry> entry = store.entry(dep, staging -> {
+            final Path stagingTmp = staging.resolve(MVNPM_DIR);
+            try {
+                return installDependency(staging, stagingTmp.resolve("tmp"), dep, 0, new ConcurrentHashMap<>())
+                        .installed().map(MvnpmInfo.InstalledDependency::dirs);
+            } finally {
+                PathUtils.deleteRecursive(stagingTmp);
+            }
+        });
+        final long stored = System.nanoTime();
+        if (entry.isEmpty()) {
+            return new Installation(dep.id(), Optional.empty(), millis(start, stored), 0, 0);
+        }
+        for (String packageName : entry.get().packages()) {
+            final Path source = entry.get().dir().resolve(packageName);
+            writePackage(nodeModulesDir, dep, packageName, index, owners, target -> PackageStore.link(source, target));
+        }
+        final long end = System.nanoTime();
+        LOG.debugf("installed dep ''%s'' (''%s'') from the package store in %dms (store: %dms, link: %dms)",
+                new Object[] { dep.path(), dep.id(), millis(start, end), millis(start, stored), millis(stored, end) });
+        return new Installation(dep.id(), Optional.of(new MvnpmInfo.InstalledDependency(dep.id(), entry.get().packages())),
+                millis(start, stored), 0, millis(stored, end));
+    }
+
+    /**
+     * Install the packages straight from the jar: the package roots are found from its central directory, then only the
+     * entries under them are extracted into their node_modules directory.
+     *
+     * @return empty when the jar has to be extracted to find its packages (no central directory, .more.tgz archive, no
+     *         package.json)
+     */
+    private static Optional<Installation> installFromJar(Path nodeModulesDir, WebDependency dep, int index,
+            Map<String, Owner> owners) throws IOException {
+        final long start = System.nanoTime();
+        final ZipFile jar;
+        try {
+            jar = new ZipFile(dep.path().toFile());
+        } catch (IOException e) {
+            LOG.debugf("Could not read the central directory of ''%s'', extracting it: %s", dep.path(), e.getMessage());
+            return Optional.empty();
+        }
+        try (jar) {
+            if (dep.type() == WebDependency.WebDependencyType.MVNPM && jar.getEntry(JarInspector.MVNPM_MORE_ARCHIVE) != null) {
+                // The archive may complete the packages
+                return Optional.empty();
+            }
+            final Map<String, String> roots = JarInspector.findPackageNameAndRoot(dep.id(), jar, dep.type());
+            if (roots.isEmpty()) {
+                return Optional.empty();
+            }
+            final long inspected = System.nanoTime();
+            final List<String> dirs = new ArrayList<>();
+            for (Map.Entry<String, String> nameAndRoot : roots.entrySet()) {
+                final String packageName = nameAndRoot.getKey();
+                final String prefix = nameAndRoot.getValue();
+                if (roots.values().stream().anyMatch(root -> !root.equals(prefix) && prefix.startsWith(root))) {
+                    LOG.debugf("ignored package ''%s'' probably installed through another package.json", packageName);
+                    continue;
+                }
+                dirs.add(packageName);
+                writePackage(nodeModulesDir, dep, packageName, index, owners, target -> Archives.unzip(jar, prefix, target));
+            }
+            final long end = System.nanoTime();
+            LOG.debugf("installed dep ''%s'' (''%s'') from its central directory in %dms (inspect: %dms, extract: %dms)",
+                    new Object[] { dep.path(), dep.id(), millis(start, end), millis(start, inspected),
+                            millis(inspected, end) });
+            return Optional.of(new Installation(dep.id(), Optional.of(new MvnpmInfo.InstalledDependency(dep.id(), dirs)),
+                    millis(inspected, end), millis(start, inspected), 0));
+        }
+    }
+
+    /**
+     * Write a package into its node_modules directory, the deps claiming the same directory write it one at a time and the
+     * last one in the list wins.
+     */
+    private static void writePackage(Path nodeModulesDir, WebDependency dep, String packageName, int index,
+            Map<String, Owner> owners, PackageWriter writer) throws IOException {
+        final Path target = nodeModulesDir.resolve(packageName);
+        final boolean written;
+        final Owner owner = owners.computeIfAbsent(packageName, name -> new Owner());
+        synchronized (owner) {
+            written = owner.index < index;
+            if (written) {
+                PathUtils.deleteRecursive(target);
+                Files.createDirectories(target.getParent());
+                writer.write(target);
+                owner.index = index;
+            }
+        }
+        if (written) {
+            LOG.debugf("installed package ''%s''", packageName);
+        } else {
+            LOG.debugf("package ''%s'' of ''%s'' is overridden by a later dep", packageName, dep.id());
+        }
+    }
+
+    @FunctionalInterface
+    private interface PackageWriter {
+        void write(Path target) throws IOException;
+    }
+
+    private static long millis(long from, long to) {
+        return TimeUnit.NANOSECONDS.toMillis(to - from);
+    }
+
+    private static final class Owner {
+        // The index of the dependency in the list, guarded by the owner
+        int index = -1;
+    }
+
+    private record Installation(String id, Optional<MvnpmInfo.InstalledDependency> installed, long extractMillis,
+            long inspectMillis, long moveMillis) {
+        long totalMillis() {
+            return extractMillis + inspectMillis + moveMillis;
+        }
+    }
+
     public static Path getMvnpmInfoPath(Path nodeModulesDir) {
         return nodeModulesDir.resolve(MVNPM_DIR).resolve("mvnpm.json");
     }
@@ -133,11 +457,23 @@ public final class WebDepsInstaller {
         }
     }
 
+    /**
+     * Write the file atomically, so that a concurrent or interrupted installation never leaves a partial file.
+     */
     public static void writeMvnpmInfo(Path path, MvnpmInfo root) {
         try {
-            Files.deleteIfExists(path);
             Files.createDirectories(path.getParent());
-            mapper.writer(new DefaultPrettyPrinter()).writeValue(path.toFile(), root);
+            final Path tmp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+            try {
+                mapper.writer(new DefaultPrettyPrinter()).writeValue(tmp.toFile(), root);
+                try {
+                    Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
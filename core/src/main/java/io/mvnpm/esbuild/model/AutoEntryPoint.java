@@ -58,6 +58,10 @@ public record AutoEntryPoint(Path rootDir, String name, List<Source> sources, Au
 
     static Path createEntryPoint(String name, Path workDir, String content) throws IOException {
         final Path entry = workDir.resolve("%s.js".formatted(name));
+        // An unchanged entry is not rewritten, so that watchers and dev rebuilds do not see it as changed
+        if (Files.isRegularFile(entry) && Files.readString(entry).equals(content)) {
+            return entry;
+        }
         Files.writeString(entry, content, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
         return entry;
     }
@@ -1,8 +1,11 @@
 package io.mvnpm.esbuild.model;
 
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 
+import io.mvnpm.esbuild.runtime.EsBuildRuntime;
+
 public record BundleOptions(
         List<EntryPoint> entries,
         List<WebDependency> dependencies,
@@ -11,7 +14,12 @@ public record BundleOptions(
         boolean debugBuild,
         long timeoutSeconds,
         Path workDir,
-        Path nodeModulesDir) {
+        Path nodeModulesDir,
+        EsBuildRuntime runtime,
+        Duration rebuildDebounce,
+        boolean inMemoryOutput,
+        boolean supervisedDev,
+        boolean contextCache) {
 
     public static final String NODE_MODULES = "node_modules";
 
@@ -19,7 +27,12 @@ public record BundleOptions(
         this(builder.entries, builder.dependencies, builder.esBuildConfig, builder.plugins, builder.debugBuild,
                 builder.timeoutSeconds,
                 builder.workDir,
-                builder.nodeModulesDir);
+                builder.nodeModulesDir,
+                builder.runtime,
+                builder.rebuildDebounce,
+                builder.inMemoryOutput,
+                builder.supervisedDev,
+                builder.contextCache);
     }
 
     public boolean hasWorkDir() {
@@ -39,7 +52,12 @@ public record BundleOptions(
                 .debugBuild(debugBuild)
                 .withTimeout(timeoutSeconds)
                 .withWorkDir(workDir)
-                .withNodeModulesDir(nodeModulesDir);
+                .withNodeModulesDir(nodeModulesDir)
+                .withRuntime(runtime)
+                .withRebuildDebounce(rebuildDebounce)
+                .withInMemoryOutput(inMemoryOutput)
+                .withSupervisedDev(supervisedDev)
+                .withContextCache(contextCache);
 
     }
 
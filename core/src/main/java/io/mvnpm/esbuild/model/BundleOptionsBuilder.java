@@ -2,12 +2,15 @@ package io.mvnpm.esbuild.model;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Predicate;
 
 import io.mvnpm.esbuild.model.AutoEntryPoint.AutoDeps;
 import io.mvnpm.esbuild.model.AutoEntryPoint.AutoDepsMode;
+import io.mvnpm.esbuild.runtime.EsBuildRuntime;
+import io.mvnpm.esbuild.runtime.Runtimes;
 
 public class BundleOptionsBuilder {
 
@@ -26,6 +29,16 @@ public class BundleOptionsBuilder {
 
     Path nodeModulesDir;
 
+    EsBuildRuntime runtime;
+
+    Duration rebuildDebounce = Duration.ZERO;
+
+    boolean inMemoryOutput;
+
+    boolean supervisedDev;
+
+    boolean contextCache;
+
     BundleOptionsBuilder() {
     }
 
@@ -105,6 +118,49 @@ public class BundleOptionsBuilder {
         return this;
     }
 
+    /**
+     * Select the runtime of this build, it is selected automatically if null (see {@link Runtimes#select}).
+     */
+    public BundleOptionsBuilder withRuntime(EsBuildRuntime runtime) {
+        this.runtime = runtime;
+        return this;
+    }
+
+    /**
+     * Wait for this quiet period after a dev build request before starting the rebuild, the requests received in the
+     * meantime (or during a running rebuild) are coalesced into a single rebuild.
+     */
+    public BundleOptionsBuilder withRebuildDebounce(Duration rebuildDebounce) {
+        this.rebuildDebounce = rebuildDebounce;
+        return this;
+    }
+
+    /**
+     * Keep the output files in memory instead of writing them to the output directory (see {@link OutputFiles}), the
+     * output directory is neither cleaned nor created.
+     */
+    public BundleOptionsBuilder withInMemoryOutput(boolean inMemoryOutput) {
+        this.inMemoryOutput = inMemoryOutput;
+        return this;
+    }
+
+    /**
+     * Restart the dev process when it dies and replay its builds (see {@link io.mvnpm.esbuild.script.SupervisedDevProcess}).
+     */
+    public BundleOptionsBuilder withSupervisedDev(boolean supervisedDev) {
+        this.supervisedDev = supervisedDev;
+        return this;
+    }
+
+    /**
+     * Reuse a live esbuild context for repeated bundles of the same options (see
+     * {@link io.mvnpm.esbuild.script.ContextCache}), the work directory must be set for the options to be the same.
+     */
+    public BundleOptionsBuilder withContextCache(boolean contextCache) {
+        this.contextCache = contextCache;
+        return this;
+    }
+
     public BundleOptionsBuilder withTimeout(long timeoutSeconds) {
         this.timeoutSeconds = timeoutSeconds;
         return this;
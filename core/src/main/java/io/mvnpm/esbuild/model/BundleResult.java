@@ -2,5 +2,13 @@ package io.mvnpm.esbuild.model;
 
 import java.nio.file.Path;
 
-public record BundleResult(Path dist, Path workDir, io.mvnpm.esbuild.deno.ScriptLog logs) {
+/**
+ * @param outputFiles the output files of an in-memory build (see {@link BundleOptionsBuilder#withInMemoryOutput(boolean)}),
+ *        empty when they were written to the output directory
+ */
+public record BundleResult(Path dist, Path workDir, io.mvnpm.esbuild.deno.ScriptLog logs, OutputFiles outputFiles) {
+
+    public BundleResult(Path dist, Path workDir, io.mvnpm.esbuild.deno.ScriptLog logs) {
+        this(dist, workDir, logs, OutputFiles.empty());
+    }
 }
@@ -159,8 +159,12 @@ public record EsBuildConfig(
         for (Field field : fields) {
             try {
                 final Object value = field.get(this);
+                final String fieldName = field.getName();
+                // those are not esbuild build flags
+                if ("esBuildVersion".equals(fieldName) || "serve".equals(fieldName) || "excludes".equals(fieldName)) {
+                    continue;
+                }
                 if (value != null) {
-                    final String fieldName = field.getName();
                     if (value == Boolean.TRUE) {
                         result.add("--" + convertField(fieldName));
                     } else if (value instanceof List) {
@@ -172,7 +176,7 @@ public record EsBuildConfig(
                     } else if (!(value instanceof Boolean)) {
                         String fn = convertField(fieldName);
                         String v = value.toString();
-                        if (!fn.equals("outdir")) {
+                        if (value instanceof Enum<?>) {
                             v = v.toLowerCase();
                         }
                         result.add("--%s=%s".formatted(fn, v));
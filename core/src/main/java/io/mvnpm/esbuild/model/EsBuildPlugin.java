@@ -10,7 +10,12 @@ public interface EsBuildPlugin {
 
     String importScript();
 
-    default void beforeBuild(Path workDir) {
+    /**
+     * Prepare the local files imported by {@link #importScript()}, once per plugins module.
+     *
+     * @param pluginsDir the directory of the plugins module, relative imports are resolved from it
+     */
+    default void beforeBuild(Path pluginsDir) {
     };
 
     String configurePlugin();
@@ -0,0 +1,150 @@
+package io.mvnpm.esbuild.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import io.mvnpm.esbuild.util.PathUtils;
+
+/**
+ * The output files of an in-memory build (see {@link BundleOptionsBuilder#withInMemoryOutput(boolean)}).
+ * <p>
+ * The contents of all the files are kept in a single direct buffer, each file gets a read-only slice of it.
+ */
+public final class OutputFiles {
+
+    /**
+     * @param path the path of the file relative to the output directory, with '/' separators
+     * @param hash the esbuild hash of the contents
+     * @param contents a read-only view of the contents
+     */
+    public record OutputFile(String path, String hash, ByteBuffer contents) {
+
+        /**
+         * @return a new read-only view of the contents, positioned at the start
+         */
+        public ByteBuffer buffer() {
+            return contents.duplicate();
+        }
+
+        public int size() {
+            return contents.remaining();
+        }
+
+        /**
+         * @return a copy of the contents
+         */
+        public byte[] bytes() {
+            final byte[] bytes = new byte[contents.remaining()];
+            contents.duplicate().get(bytes);
+            return bytes;
+        }
+    }
+
+    private static final OutputFiles EMPTY = new OutputFiles(Map.of());
+
+    private final Map<String, OutputFile> files;
+
+    private OutputFiles(Map<String, OutputFile> files) {
+        this.files = files;
+    }
+
+    public static OutputFiles empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @param dist the output directory, the file paths are relative to it
+     * @param capacity the total size of the contents
+     */
+    public static Builder builder(Path dist, int capacity) {
+        return new Builder(dist, capacity);
+    }
+
+    /**
+     * @param path the path relative to the output directory, with '/' separators
+     */
+    public Optional<OutputFile> get(String path) {
+        return Optional.ofNullable(files.get(path));
+    }
+
+    public Set<String> paths() {
+        return files.keySet();
+    }
+
+    public Collection<OutputFile> files() {
+        return files.values();
+    }
+
+    public int size() {
+        return files.size();
+    }
+
+    public boolean isEmpty() {
+        return files.isEmpty();
+    }
+
+    public long totalBytes() {
+        return files.values().stream().mapToLong(OutputFile::size).sum();
+    }
+
+    /**
+     * Write the files to a directory.
+     */
+    public void writeTo(Path dir) throws IOException {
+        for (OutputFile file : files.values()) {
+            final Path target = dir.resolve(file.path());
+            Files.createDirectories(target.getParent());
+            try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                final ByteBuffer buffer = file.buffer();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+
+    public static final class Builder {
+        private final Path dist;
+        private final ByteBuffer buffer;
+        private final Map<String, OutputFile> files = new LinkedHashMap<>();
+
+        private Builder(Path dist, int capacity) {
+            this.dist = dist.toAbsolutePath().normalize();
+            this.buffer = ByteBuffer.allocateDirect(capacity);
+        }
+
+        /**
+         * Copy the contents of a file in the direct buffer.
+         *
+         * @param path the absolute path of the file (as reported by esbuild)
+         * @param hash the esbuild hash of the contents
+         * @param source the array holding the contents
+         * @param offset the offset of the contents in the array
+         * @param length the length of the contents
+         */
+        public Builder add(String path, String hash, byte[] source, int offset, int length) {
+            final int start = buffer.position();
+            buffer.put(source, offset, length);
+            final ByteBuffer contents = buffer.slice(start, length).asReadOnlyBuffer();
+            final Path file = Path.of(path).toAbsolutePath().normalize();
+            final String relative = PathUtils.toUnixPath(file.startsWith(dist) ? dist.relativize(file).toString() : path);
+            files.put(relative, new OutputFile(relative, hash, contents));
+            return this;
+        }
+
+        public OutputFiles build() {
+            return new OutputFiles(Collections.unmodifiableMap(files));
+        }
+    }
+}
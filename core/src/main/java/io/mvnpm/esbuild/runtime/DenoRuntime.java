@@ -0,0 +1,62 @@
+package io.mvnpm.esbuild.runtime;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import io.mvnpm.esbuild.BundlingException;
+import io.mvnpm.esbuild.deno.DenoRunner;
+import io.mvnpm.esbuild.model.BundleOptions;
+
+/**
+ * Run the esbuild scripts on the Deno binary installed in node_modules (the default).
+ * <p>
+ * Deno keeps its V8 code cache in its cache directory, when the {@code DENO_DIR} environment variable is not set a
+ * persistent one is used ({@code ~/.esbuild-java/deno}) so that the cache is hit on every run.
+ */
+public class DenoRuntime implements JsRuntime {
+    private static final String DENO_DIR = "DENO_DIR";
+
+    @Override
+    public String name() {
+        return "deno";
+    }
+
+    @Override
+    public boolean isAvailable(Path nodeModules, BundleOptions bundleOptions) {
+        try {
+            return Files.isRegularFile(DenoRunner.getDenoBinary(nodeModules));
+        } catch (BundlingException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Map<String, String> environment() {
+        if (System.getenv(DENO_DIR) != null) {
+            return Map.of();
+        }
+        return Map.of(DENO_DIR, Path.of(System.getProperty("user.home"), ".esbuild-java", "deno").toString());
+    }
+
+    @Override
+    public List<String> command(Path nodeModules, Path scriptFile, boolean debug) {
+        final List<String> args = new ArrayList<>(List.of(
+                DenoRunner.getDenoBinary(nodeModules).toAbsolutePath().toString(),
+                "run",
+                "-R",
+                "-W=.",
+                "--allow-ffi",
+                "--allow-env",
+                "--allow-sys",
+                "--allow-run",
+                "--node-modules-dir=manual"));
+        if (debug) {
+            args.add("--inspect-wait");
+        }
+        args.add(scriptFile.toAbsolutePath().toString());
+        return args;
+    }
+}
@@ -0,0 +1,50 @@
+package io.mvnpm.esbuild.runtime;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import io.mvnpm.esbuild.deno.ScriptLog;
+import io.mvnpm.esbuild.model.BundleOptions;
+import io.mvnpm.esbuild.script.DevProcess;
+
+/**
+ * A way of running esbuild for a build, it can be selected per build with
+ * {@link io.mvnpm.esbuild.model.BundleOptionsBuilder#withRuntime(EsBuildRuntime)} or for the whole environment with the
+ * {@value Runtimes#RUNTIME_PROPERTY} system property.
+ *
+ * @see Runtimes for the built-in runtimes
+ */
+public interface EsBuildRuntime {
+
+    /**
+     * @return the name of this runtime
+     */
+    String name();
+
+    /**
+     * @param nodeModules the node_modules directory of the build
+     * @param bundleOptions the options of the build
+     * @return true if this runtime is installed and can run this build
+     */
+    boolean isAvailable(Path nodeModules, BundleOptions bundleOptions);
+
+    /**
+     * Run a one-shot build.
+     *
+     * @param workDir the work directory of the build
+     * @param nodeModules the node_modules directory of the build
+     * @param bundleOptions the prepared bundle options
+     * @return the build logs
+     */
+    ScriptLog build(Path workDir, Path nodeModules, BundleOptions bundleOptions) throws IOException;
+
+    /**
+     * Create a dev process which can be rebuilt on demand, it is initialized by the caller.
+     *
+     * @param workDir the work directory of the build
+     * @param nodeModules the node_modules directory of the build
+     * @param bundleOptions the prepared bundle options
+     * @return the dev process
+     */
+    DevProcess dev(Path workDir, Path nodeModules, BundleOptions bundleOptions) throws IOException;
+}
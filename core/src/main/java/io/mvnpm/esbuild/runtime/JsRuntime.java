@@ -0,0 +1,42 @@
+package io.mvnpm.esbuild.runtime;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import io.mvnpm.esbuild.deno.ScriptLog;
+import io.mvnpm.esbuild.model.BundleOptions;
+import io.mvnpm.esbuild.script.BuildScript;
+import io.mvnpm.esbuild.script.DevProcess;
+import io.mvnpm.esbuild.script.DevScript;
+
+/**
+ * A JavaScript runtime running the esbuild scripts (with the esbuild npm package and the plugins).
+ */
+public interface JsRuntime extends EsBuildRuntime {
+
+    /**
+     * @param nodeModules the node_modules directory of the build
+     * @param scriptFile the script to run
+     * @param debug true to wait for a debugger to attach
+     * @return the command line running the script
+     */
+    List<String> command(Path nodeModules, Path scriptFile, boolean debug);
+
+    /**
+     * @return the environment variables added to the runtime process
+     */
+    default Map<String, String> environment() {
+        return Map.of();
+    }
+
+    @Override
+    default ScriptLog build(Path workDir, Path nodeModules, BundleOptions bundleOptions) {
+        return BuildScript.build(workDir, nodeModules, bundleOptions);
+    }
+
+    @Override
+    default DevProcess dev(Path workDir, Path nodeModules, BundleOptions bundleOptions) {
+        return new DevScript(workDir, bundleOptions);
+    }
+}
@@ -0,0 +1,36 @@
+package io.mvnpm.esbuild.runtime;
+
+import java.nio.file.Path;
+
+import io.mvnpm.esbuild.binary.EsBuildRunner;
+import io.mvnpm.esbuild.deno.ScriptLog;
+import io.mvnpm.esbuild.model.BundleOptions;
+import io.mvnpm.esbuild.script.DevProcess;
+import io.mvnpm.esbuild.service.EsBuildService;
+
+/**
+ * Run esbuild directly on its native binary through the {@link EsBuildService}, without any JS runtime. Plugins are not
+ * supported.
+ */
+public class NativeRuntime implements EsBuildRuntime {
+
+    @Override
+    public String name() {
+        return "native";
+    }
+
+    @Override
+    public boolean isAvailable(Path nodeModules, BundleOptions bundleOptions) {
+        return EsBuildRunner.supports(nodeModules, bundleOptions);
+    }
+
+    @Override
+    public ScriptLog build(Path workDir, Path nodeModules, BundleOptions bundleOptions) {
+        return EsBuildService.get(nodeModules).build(workDir, bundleOptions);
+    }
+
+    @Override
+    public DevProcess dev(Path workDir, Path nodeModules, BundleOptions bundleOptions) {
+        return EsBuildService.get(nodeModules).context(workDir, bundleOptions);
+    }
+}
@@ -0,0 +1,41 @@
+package io.mvnpm.esbuild.runtime;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import io.mvnpm.esbuild.BundlingException;
+import io.mvnpm.esbuild.model.BundleOptions;
+
+/**
+ * Run the esbuild scripts on a system Node.js, found on the PATH or set with the {@value #PATH_PROPERTY} system property.
+ */
+public class NodeRuntime implements JsRuntime {
+    public static final String PATH_PROPERTY = "esbuild-java.node.path";
+
+    @Override
+    public String name() {
+        return "node";
+    }
+
+    @Override
+    public boolean isAvailable(Path nodeModules, BundleOptions bundleOptions) {
+        return binary().isPresent();
+    }
+
+    @Override
+    public List<String> command(Path nodeModules, Path scriptFile, boolean debug) {
+        final List<String> args = new ArrayList<>();
+        args.add(binary().orElseThrow(() -> new BundlingException("Node.js binary not found for EsBuild Java")).toString());
+        if (debug) {
+            args.add("--inspect-brk");
+        }
+        args.add(scriptFile.toAbsolutePath().toString());
+        return args;
+    }
+
+    private static Optional<Path> binary() {
+        return Runtimes.findBinary(PATH_PROPERTY, "node");
+    }
+}
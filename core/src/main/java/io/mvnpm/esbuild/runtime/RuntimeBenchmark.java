@@ -0,0 +1,102 @@
+package io.mvnpm.esbuild.runtime;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalLong;
+
+import io.mvnpm.esbuild.Bundler;
+import io.mvnpm.esbuild.BundlingException;
+import io.mvnpm.esbuild.model.BundleOptions;
+import io.mvnpm.esbuild.model.DevResult;
+import io.mvnpm.esbuild.script.DevProcess;
+import io.mvnpm.esbuild.util.ProcessStats;
+
+/**
+ * Compare the esbuild runtimes available in this environment on the same entrypoint.
+ * <p>
+ * For each runtime it reports the cold start (from starting the dev process to the end of the first build), the median
+ * and max rebuild latency after a change of the entrypoint, and the resident memory of the runtime processes.
+ * <p>
+ * Usage: {@code RuntimeBenchmark <entrypoint> [rebuilds] [runtime...]}
+ */
+public class RuntimeBenchmark {
+
+    public record Result(String runtime, long coldStartMillis, long rebuildMedianMillis, long rebuildMaxMillis,
+            OptionalLong rssBytes) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: RuntimeBenchmark <entrypoint> [rebuilds] [runtime...]");
+            return;
+        }
+        final Path entrypoint = Path.of(args[0]);
+        final int rebuilds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        final List<String> names = args.length > 2 ? Arrays.asList(args).subList(2, args.length)
+                : Runtimes.ALL.stream().map(EsBuildRuntime::name).toList();
+
+        final Path root = Files.createTempDirectory("esbuild-benchmark");
+        final Path nodeModules = root.resolve(BundleOptions.NODE_MODULES);
+        Bundler.install(nodeModules, List.of());
+
+        System.out.printf("%-8s %14s %16s %13s %10s%n", "runtime", "cold start ms", "rebuild p50 ms", "rebuild max ms",
+                "RSS MB");
+        for (String name : names) {
+            final EsBuildRuntime runtime = Runtimes.byName(name)
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown runtime: " + name));
+            final BundleOptions options = BundleOptions.builder()
+                    .addEntryPoint(entrypoint)
+                    .withWorkDir(Files.createDirectories(root.resolve(name)))
+                    .withNodeModulesDir(nodeModules)
+                    .withRuntime(runtime)
+                    .build();
+            if (!runtime.isAvailable(nodeModules, options)) {
+                System.out.printf("%-8s not available%n", name);
+                continue;
+            }
+            try {
+                final Result result = run(runtime, options, entrypoint.getFileName().toString(), rebuilds);
+                System.out.printf("%-8s %14d %16d %13d %10s%n", result.runtime(), result.coldStartMillis(),
+                        result.rebuildMedianMillis(), result.rebuildMaxMillis(),
+                        result.rssBytes().isPresent() ? Long.toString(result.rssBytes().getAsLong() / (1024 * 1024))
+                                : "n/a");
+            } catch (BundlingException e) {
+                System.out.printf("%-8s failed: %s%n", name, e.getMessage());
+            }
+        }
+    }
+
+    public static Result run(EsBuildRuntime runtime, BundleOptions options, String entryName, int rebuilds)
+            throws IOException {
+        final long start = System.nanoTime();
+        try (DevResult devResult = Bundler.dev(options, false)) {
+            final DevProcess process = devResult.process();
+            process.build();
+            final long coldStart = System.nanoTime() - start;
+
+            final Path entry = process.workDir().resolve(entryName);
+            final List<Long> latencies = new ArrayList<>(rebuilds);
+            for (int i = 0; i < rebuilds; i++) {
+                Files.writeString(entry, "\n// rebuild " + i, StandardOpenOption.APPEND);
+                final long rebuildStart = System.nanoTime();
+                process.build();
+                latencies.add(System.nanoTime() - rebuildStart);
+            }
+            latencies.sort(Long::compare);
+            final OptionalLong rss = process.processHandle().map(ProcessStats::rss).orElse(OptionalLong.empty());
+            return new Result(runtime.name(), millis(coldStart),
+                    latencies.isEmpty() ? 0 : millis(latencies.get(latencies.size() / 2)),
+                    latencies.isEmpty() ? 0 : millis(latencies.get(latencies.size() - 1)),
+                    rss);
+        }
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1_000_000;
+    }
+}
@@ -0,0 +1,99 @@
+package io.mvnpm.esbuild.runtime;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import io.mvnpm.esbuild.BundlingException;
+import io.mvnpm.esbuild.deno.DenoRunner;
+import io.mvnpm.esbuild.model.BundleOptions;
+
+/**
+ * The built-in esbuild runtimes and the runtime selection of a build.
+ */
+public final class Runtimes {
+
+    /**
+     * Set this system property to deno, node, bun, native or auto (the default) to select the runtime of the builds which
+     * don't select one in their options.
+     */
+    public static final String RUNTIME_PROPERTY = "esbuild-java.runtime";
+
+    public static final DenoRuntime DENO = new DenoRuntime();
+    public static final NodeRuntime NODE = new NodeRuntime();
+    public static final BunRuntime BUN = new BunRuntime();
+    public static final NativeRuntime NATIVE = new NativeRuntime();
+
+    public static final List<EsBuildRuntime> ALL = List.of(DENO, NODE, BUN, NATIVE);
+
+    private Runtimes() {
+    }
+
+    /**
+     * @return the built-in runtime with that name
+     */
+    public static Optional<EsBuildRuntime> byName(String name) {
+        return ALL.stream().filter(r -> r.name().equalsIgnoreCase(name)).findFirst();
+    }
+
+    /**
+     * Select the runtime of a build: the one of the options, else the one of the {@value #RUNTIME_PROPERTY} system property,
+     * else the native runtime when it can run the build (no plugins) and Deno otherwise.
+     *
+     * @throws BundlingException when the selected runtime is not available for this build
+     */
+    public static EsBuildRuntime select(Path nodeModules, BundleOptions bundleOptions) {
+        EsBuildRuntime runtime = bundleOptions.runtime();
+        if (runtime == null) {
+            final String name = System.getProperty(RUNTIME_PROPERTY, "auto");
+            if (!"auto".equalsIgnoreCase(name)) {
+                runtime = byName(name).orElseThrow(() -> new BundlingException("Unknown EsBuild runtime: " + name));
+            }
+        }
+        if (runtime == null) {
+            return NATIVE.isAvailable(nodeModules, bundleOptions) ? NATIVE : DENO;
+        }
+        if (!runtime.isAvailable(nodeModules, bundleOptions)) {
+            throw new BundlingException("EsBuild runtime '%s' is not available for this build".formatted(runtime.name()));
+        }
+        return runtime;
+    }
+
+    /**
+     * @return the JS runtime to run the scripts of those options, Deno if none is selected
+     */
+    public static JsRuntime jsRuntime(BundleOptions bundleOptions) {
+        return bundleOptions.runtime() instanceof JsRuntime jsRuntime ? jsRuntime : DENO;
+    }
+
+    /**
+     * Find a binary from a system property or on the PATH.
+     */
+    static Optional<Path> findBinary(String property, String name) {
+        final String configured = System.getProperty(property);
+        if (configured != null) {
+            return Optional.of(Path.of(configured)).filter(Files::isExecutable);
+        }
+        final String path = System.getenv("PATH");
+        if (path == null) {
+            return Optional.empty();
+        }
+        final List<String> names = DenoRunner.isWindows() ? List.of(name + ".exe", name + ".cmd") : List.of(name);
+        for (String dir : path.split(File.pathSeparator)) {
+            for (String n : names) {
+                try {
+                    final Path candidate = Path.of(dir).resolve(n);
+                    if (Files.isRegularFile(candidate) && Files.isExecutable(candidate)) {
+                        return Optional.of(candidate);
+                    }
+                } catch (InvalidPathException e) {
+                    // ignore invalid PATH entries
+                }
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -1,52 +1,89 @@
 package io.mvnpm.esbuild.script;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.stream.Collectors;
+
+import io.mvnpm.esbuild.model.BundleOptions;
+import io.mvnpm.esbuild.model.EsBuildPlugin;
+import io.mvnpm.esbuild.util.PathUtils;
+
+/**
+ * The JavaScript shared by the esbuild scripts.
+ * <p>
+ * The scripts are static, so that the runtime compile cache is reused between runs. The color support and the plugins are
+ * set at runtime, the plugin imports and config mappers are loaded from a generated plugins module.
+ */
 public class CommonScript {
 
+    public static final String PLUGINS_MODULE = "esbuild-java-plugins.mjs";
+
     // language=JavaScript
     public static final String COMMON = """
             import * as esbuild from 'esbuild';
+            import * as path from 'node:path';
+            import { pathToFileURL } from 'node:url';
 
-            %s
+            let color = false;
+            let plugins = [];
+            let mappers = {};
 
-            const nodeModulesDir = "%s";
-            const color = %s;
-            const plugins = %s;
+            async function configure(request) {
+                color = request.color;
+                plugins = request.plugins;
+                if (request.pluginsModule) {
+                    mappers = (await import(pathToFileURL(request.pluginsModule).href)).mappers;
+                }
+            }
+
+            function cleanMessage(message) {
+                return message.replace('[ERROR]', '').replace('[WARNING]', '');
+            }
 
             function cleanLog(log) {
-                return log.replace(/(?:\\r\\n|\\r|\\n)/g, '<br>').replace('[ERROR]', '').replace('[WARNING]', '');
+                return cleanMessage(log.replace(/(?:\\r\\n|\\r|\\n)/g, '<br>'));
+            }
+
+            function log(sink, level, message) {
+                if (sink) {
+                    sink.logs.push({ level, message: cleanMessage(message) });
+                } else {
+                    console.log(`[${level}] ` + cleanLog(message));
+                }
             }
 
-            function captureLogsPlugin() {
+            function captureLogsPlugin(sink) {
                 return {
                     name: 'capture-logs', setup(build) {
                         build.onEnd(async result => {
                             if (result.errors.length > 0) {
                                 let formatted = await esbuild.formatMessages(result.errors, { kind: 'error', color, terminalWidth: 100 });
-                                formatted.forEach((f) => console.log('[ERROR] ' + cleanLog(f)));
+                                formatted.forEach((f) => log(sink, 'ERROR', f));
                             }
                             if (result.warnings.length > 0) {
                                 let formatted = await esbuild.formatMessages(result.warnings, { kind: 'warning', color, terminalWidth: 100 });
-                                formatted.forEach((f) => console.log('[WARN] ' + cleanLog(f)));
+                                formatted.forEach((f) => log(sink, 'WARN', f));
                             }
                         });
                     }
                 };
             }
 
-            function applyPlugins(config) {
+            function applyPlugins(config, sink) {
                 let newConfig = config;
                 newConfig.logLevel = 'silent';
                 if (!newConfig.plugins) {
-                    newConfig.plugins = [captureLogsPlugin()];
+                    newConfig.plugins = [captureLogsPlugin(sink)];
                 }
                 for (const plugin of plugins) {
                     console.log(`[DEBUG] Adding plugin ${plugin.name}`);
                     try {
-                        const configurePlugin = eval(plugin.buildConfigMapper);
-                        newConfig = configurePlugin(config, plugin.data);
+                        newConfig = mappers[plugin.name](config, plugin.data);
                     } catch (err) {
-                        console.error(`[ERROR] Error while applying plugin ${plugin.name}:`, cleanLog(err.stack));
-                        process.exit(1);
+                        throw new Error(`Error while applying plugin ${plugin.name}: ${err.stack}`);
                     }
                     console.log(`[DEBUG] ${plugin.name} plugin added`);
                 }
@@ -55,4 +92,61 @@ public class CommonScript {
 
             """;
 
+    // language=JavaScript
+    private static final String PLUGINS_TEMPLATE = """
+            import * as esbuild from 'esbuild';
+
+            %s
+
+            const nodeModulesDir = "%s";
+
+            export const mappers = {
+            %s
+            };
+            """;
+
+    /**
+     * Write the plugins module in node_modules if needed, next to the files prepared by the plugins (so that plugins can
+     * import local files). Its directory name contains the hash of its content, so that a worker running it can build in any
+     * work directory and the module is never modified afterward.
+     *
+     * @param nodeModulesDir the node_modules directory, the plugins are resolved from it
+     * @return the plugins module, or null when there are no plugins
+     */
+    public static Path preparePluginsModule(Path nodeModulesDir, BundleOptions bundleOptions) throws IOException {
+        if (bundleOptions.plugins().isEmpty()) {
+            return null;
+        }
+        final String imports = bundleOptions.plugins().stream().map(EsBuildPlugin::importScript)
+                .collect(Collectors.joining("\n"));
+        final String mappers = bundleOptions.plugins().stream()
+                .map(p -> "  \"%s\": %s,".formatted(p.name(), p.configurePlugin().strip()))
+                .collect(Collectors.joining("\n"));
+        // The files prepared by the plugins come from their jar, so their versions are part of the hash
+        final String versions = bundleOptions.plugins().stream()
+                .map(p -> p.getClass().getName() + ":" + p.getClass().getPackage().getImplementationVersion())
+                .collect(Collectors.joining(","));
+        final String content = PLUGINS_TEMPLATE.formatted(imports, "../..", mappers);
+        final String hash = WorkerScript.sha256((versions + "\n" + content).getBytes(StandardCharsets.UTF_8));
+        final Path dir = nodeModulesDir.resolve(".esbuild-java");
+        final Path pluginsDir = dir.resolve("plugins-" + hash.substring(0, 16));
+        final Path module = pluginsDir.resolve(PLUGINS_MODULE);
+        if (!Files.isRegularFile(module)) {
+            Files.createDirectories(dir);
+            final Path tmp = Files.createTempDirectory(dir, "plugins-");
+            try {
+                bundleOptions.plugins().forEach(p -> p.beforeBuild(tmp));
+                Files.writeString(tmp.resolve(PLUGINS_MODULE), content);
+                Files.move(tmp, pluginsDir, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | RuntimeException e) {
+                // Another process may have written it concurrently
+                PathUtils.deleteRecursive(tmp);
+                if (!Files.isRegularFile(module)) {
+                    throw e;
+                }
+            }
+        }
+        return module;
+    }
+
 }
@@ -0,0 +1,304 @@
+package io.mvnpm.esbuild.script;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+import org.jboss.logging.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import io.mvnpm.esbuild.model.BundleOptions;
+import io.mvnpm.esbuild.model.BundleResult;
+import io.mvnpm.esbuild.model.EsBuildPlugin;
+import io.mvnpm.esbuild.model.OutputFiles;
+import io.mvnpm.esbuild.util.Trash;
+
+/**
+ * A cache of live esbuild contexts for repeated builds of the same options, so that esbuild's incremental caches are reused
+ * (see {@link io.mvnpm.esbuild.model.BundleOptionsBuilder#withContextCache(boolean)}).
+ * <p>
+ * The contexts are keyed by a canonical fingerprint of the prepared options (work directory, node_modules, esbuild config,
+ * plugins and runtime). They build in memory, the output directory is cleaned and written from the output files after each
+ * build, so that it never depends on the files esbuild skipped because they did not change.
+ * <p>
+ * The least recently used contexts are closed when there are more than the maximum number of contexts or when their
+ * estimated memory exceeds the budget. The memory of a context is estimated from the size of its input and output files.
+ */
+public class ContextCache implements Closeable {
+    public static final String MAX_CONTEXTS_PROPERTY = "esbuild-java.context-cache.max-contexts";
+    public static final String MAX_MEMORY_MB_PROPERTY = "esbuild-java.context-cache.max-memory-mb";
+    private static final Logger LOG = Logger.getLogger(ContextCache.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+    // The parsed sources held by esbuild are several times bigger than the sources
+    private static final int INPUT_MEMORY_FACTOR = 4;
+    private static volatile ContextCache shared;
+
+    /**
+     * @param hits the builds reusing a live context
+     * @param misses the builds creating a context
+     * @param evictions the contexts closed to respect the limits
+     * @param contexts the number of live contexts
+     * @param memoryBytes the estimated memory of the live contexts
+     */
+    public record Stats(long hits, long misses, long evictions, int contexts, long memoryBytes) {
+    }
+
+    private final int maxContexts;
+    private final long maxMemoryBytes;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long hits;
+    private long misses;
+    private long evictions;
+    private boolean closed;
+
+    /**
+     * @param maxContexts the maximum number of live contexts
+     * @param maxMemoryBytes the estimated memory budget of the live contexts, the last used context is always kept
+     */
+    public ContextCache(int maxContexts, long maxMemoryBytes) {
+        this.maxContexts = Math.max(1, maxContexts);
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+
+    /**
+     * @return the cache used by {@link io.mvnpm.esbuild.Bundler}, its limits are read from the
+     *         {@value #MAX_CONTEXTS_PROPERTY} (8 by default) and {@value #MAX_MEMORY_MB_PROPERTY} (512 by default) system
+     *         properties
+     */
+    public static ContextCache shared() {
+        ContextCache cache = shared;
+        if (cache == null) {
+            synchronized (ContextCache.class) {
+                cache = shared;
+                if (cache == null) {
+                    cache = new ContextCache(Integer.getInteger(MAX_CONTEXTS_PROPERTY, 8),
+                            Long.getLong(MAX_MEMORY_MB_PROPERTY, 512) * 1024 * 1024);
+                    shared = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Build with a live context for those options, the context is created on the first build.
+     *
+     * @param workDir the work directory of the build
+     * @param nodeModulesDir the node_modules directory
+     * @param bundleOptions the prepared bundle options
+     * @return the result of the build, with the output files when the options are in memory
+     * @throws io.mvnpm.esbuild.BundlingException when the build failed
+     * @throws IOException when something could not be written
+     */
+    public BundleResult build(Path workDir, Path nodeModulesDir, BundleOptions bundleOptions) throws IOException {
+        while (true) {
+            final Entry entry = acquire(workDir, nodeModulesDir, bundleOptions);
+            synchronized (entry) {
+                if (entry.closed && !entry.ready.isCompletedExceptionally()) {
+                    // evicted before this build could start
+                    continue;
+                }
+                return build(entry, workDir, bundleOptions);
+            }
+        }
+    }
+
+    private BundleResult build(Entry entry, Path workDir, BundleOptions bundleOptions) throws IOException {
+        final BundleResult result;
+        try {
+            result = WorkerScript.await(entry.ready.thenCompose(ignored -> entry.process.buildAsync()),
+                    timeoutSeconds(bundleOptions));
+        } catch (RuntimeException e) {
+            if (!entry.process.isAlive()) {
+                remove(entry);
+            }
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw e;
+        }
+        final OutputFiles outputFiles = result.outputFiles();
+        if (!bundleOptions.inMemoryOutput()) {
+            Trash.delete(result.dist());
+            Files.createDirectories(result.dist());
+            outputFiles.writeTo(result.dist());
+        }
+        entry.memoryBytes = estimateMemory(entry.process, outputFiles);
+        evict();
+        return new BundleResult(result.dist(), workDir, result.logs(),
+                bundleOptions.inMemoryOutput() ? outputFiles : OutputFiles.empty());
+    }
+
+    private synchronized Entry acquire(Path workDir, Path nodeModulesDir, BundleOptions bundleOptions)
+            throws IOException {
+        if (closed) {
+            throw new IllegalStateException("ContextCache is closed");
+        }
+        final String key = fingerprint(workDir, nodeModulesDir, bundleOptions);
+        final Entry existing = entries.get(key);
+        // A context being initialized is not alive yet
+        if (existing != null && (!existing.ready.isDone() || existing.process.isAlive())) {
+            hits++;
+            return existing;
+        }
+        if (existing != null) {
+            entries.remove(key);
+            existing.closed = true;
+            CompletableFuture.runAsync(() -> closeQuietly(existing.process));
+        }
+        misses++;
+        final BundleOptions contextOptions = bundleOptions.edit()
+                .withInMemoryOutput(true)
+                .withRebuildDebounce(Duration.ZERO)
+                .build();
+        final DevProcess process = new ScriptRunner(workDir, nodeModulesDir, contextOptions).dev();
+        CompletableFuture<Void> ready;
+        try {
+            ready = process.initAsync();
+        } catch (RuntimeException e) {
+            ready = CompletableFuture.failedFuture(e);
+        }
+        final Entry created = new Entry(key, process, ready);
+        entries.put(key, created);
+        ready.whenComplete((r, e) -> {
+            if (e != null) {
+                remove(created);
+            }
+        });
+        LOG.debugf("Created a cached esbuild context for ''%s''", workDir);
+        return created;
+    }
+
+    private long estimateMemory(DevProcess process, OutputFiles outputFiles) {
+        long inputs = 0;
+        for (Path input : process.inputs()) {
+            try {
+                inputs += Files.size(input);
+            } catch (IOException e) {
+                // deleted since the build
+            }
+        }
+        return inputs * INPUT_MEMORY_FACTOR + outputFiles.totalBytes();
+    }
+
+    private void evict() {
+        final List<Entry> evicted = new ArrayList<>();
+        synchronized (this) {
+            long memory = memoryBytes();
+            final Iterator<Entry> iterator = entries.values().iterator();
+            // The most recently used context is last and always kept
+            while (entries.size() > 1 && (entries.size() > maxContexts || memory > maxMemoryBytes)) {
+                final Entry eldest = iterator.next();
+                iterator.remove();
+                memory -= eldest.memoryBytes;
+                evictions++;
+                evicted.add(eldest);
+            }
+        }
+        for (Entry entry : evicted) {
+            LOG.debugf("Evicting the cached esbuild context ''%s'' (%d bytes)", entry.key, entry.memoryBytes);
+            // A running build of the context keeps its lock, the context is closed once it is done
+            CompletableFuture.runAsync(() -> {
+                synchronized (entry) {
+                    entry.closed = true;
+                    closeQuietly(entry.process);
+                }
+            });
+        }
+    }
+
+    private synchronized long memoryBytes() {
+        return entries.values().stream().mapToLong(e -> e.memoryBytes).sum();
+    }
+
+    private void remove(Entry entry) {
+        synchronized (this) {
+            entries.remove(entry.key, entry);
+        }
+        entry.closed = true;
+        closeQuietly(entry.process);
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, entries.size(), memoryBytes());
+    }
+
+    /**
+     * @return a canonical fingerprint of the options, two options with the same fingerprint build the same context
+     */
+    static String fingerprint(Path workDir, Path nodeModulesDir, BundleOptions bundleOptions) throws IOException {
+        final Map<String, Object> canonical = new LinkedHashMap<>();
+        canonical.put("workDir", workDir.toAbsolutePath().normalize().toString());
+        canonical.put("nodeModulesDir", nodeModulesDir.toAbsolutePath().normalize().toString());
+        canonical.put("config", MAPPER.readValue(bundleOptions.esBuildConfig().toJson(), Object.class));
+        final List<Map<String, Object>> plugins = new ArrayList<>();
+        for (EsBuildPlugin plugin : bundleOptions.plugins()) {
+            final Map<String, Object> map = new LinkedHashMap<>(plugin.toMap());
+            map.put("importScript", plugin.importScript());
+            plugins.add(map);
+        }
+        canonical.put("plugins", plugins);
+        canonical.put("runtime", Objects.toString(bundleOptions.runtime()));
+        canonical.put("debugBuild", bundleOptions.debugBuild());
+        try {
+            final byte[] json = MAPPER.writeValueAsBytes(canonical);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static long timeoutSeconds(BundleOptions bundleOptions) {
+        return bundleOptions.debugBuild() ? -1 : bundleOptions.timeoutSeconds();
+    }
+
+    private static void closeQuietly(DevProcess process) {
+        try {
+            process.close();
+        } catch (IOException | RuntimeException e) {
+            LOG.debugf("Could not close the cached esbuild context of ''%s'': %s", process.workDir(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        final List<Entry> all;
+        synchronized (this) {
+            closed = true;
+            all = new ArrayList<>(entries.values());
+            entries.clear();
+        }
+        for (Entry entry : all) {
+            entry.closed = true;
+            closeQuietly(entry.process);
+        }
+    }
+
+    private static final class Entry {
+        final String key;
+        final DevProcess process;
+        final CompletableFuture<Void> ready;
+        volatile long memoryBytes;
+        volatile boolean closed;
+
+        Entry(String key, DevProcess process, CompletableFuture<Void> ready) {
+            this.key = key;
+            this.process = process;
+            this.ready = ready;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package io.mvnpm.esbuild.script;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.jboss.logging.Logger;
+
+import io.mvnpm.esbuild.model.BundleResult;
+import io.mvnpm.esbuild.model.OutputFiles;
+
+/**
+ * A dev process which is prepared in the background (dependencies installation, process startup), the builds wait for the
+ * remaining preparation work only.
+ * <p>
+ * Initializing it only waits for the preparation, it may be called several times.
+ */
+public class DeferredDevProcess implements DevProcess {
+    private static final Logger LOG = Logger.getLogger(DeferredDevProcess.class);
+    private final CompletableFuture<DevProcess> ready;
+    private final Path workDir;
+    private final Path dist;
+    private final long timeoutSeconds;
+    private volatile boolean closed;
+
+    /**
+     * @param ready the initialized dev process, once prepared
+     * @param workDir the work directory of the process
+     * @param dist the output directory of the process
+     * @param timeoutSeconds the timeout of the blocking calls, no timeout if lower or equal to 0
+     */
+    public DeferredDevProcess(CompletableFuture<DevProcess> ready, Path workDir, Path dist, long timeoutSeconds) {
+        this.ready = ready;
+        this.workDir = workDir;
+        this.dist = dist;
+        this.timeoutSeconds = timeoutSeconds;
+        ready.whenComplete((p, e) -> {
+            if (e != null) {
+                LOG.debugf("Could not prepare the dev process of ''%s'': %s", workDir, e.getMessage());
+            } else if (closed) {
+                close(p);
+            }
+        });
+    }
+
+    /**
+     * Wait for the process to be prepared.
+     */
+    @Override
+    public void init() {
+        WorkerScript.await(ready, timeoutSeconds);
+    }
+
+    @Override
+    public CompletableFuture<Void> initAsync() {
+        return ready.thenApply(p -> null);
+    }
+
+    /**
+     * @return true if the process is prepared
+     */
+    public boolean isReady() {
+        return ready.isDone() && !ready.isCompletedExceptionally();
+    }
+
+    @Override
+    public void build() throws IOException {
+        build(Set.of());
+    }
+
+    @Override
+    public void build(Set<Path> changed) throws IOException {
+        try {
+            WorkerScript.await(ready, timeoutSeconds).build(changed);
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<BundleResult> buildAsync() {
+        return buildAsync(Set.of());
+    }
+
+    @Override
+    public CompletableFuture<BundleResult> buildAsync(Set<Path> changed) {
+        final CompletableFuture<BundleResult> result = ready.thenCompose(p -> p.buildAsync(changed));
+        final CompletableFuture<BundleResult> copy = result.copy();
+        copy.whenComplete((r, e) -> {
+            if (copy.isCancelled()) {
+                result.cancel(false);
+            }
+        });
+        return copy;
+    }
+
+    private Optional<DevProcess> delegate() {
+        return isReady() ? Optional.of(ready.join()) : Optional.empty();
+    }
+
+    @Override
+    public Set<Path> inputs() {
+        return delegate().map(DevProcess::inputs).orElse(Set.of());
+    }
+
+    @Override
+    public OutputFiles outputFiles() {
+        return delegate().map(DevProcess::outputFiles).orElse(OutputFiles.empty());
+    }
+
+    @Override
+    public Path workDir() {
+        return workDir;
+    }
+
+    @Override
+    public Path dist() {
+        return dist;
+    }
+
+    /**
+     * @return true while being prepared, then if the prepared process is alive
+     */
+    @Override
+    public boolean isAlive() {
+        if (closed || ready.isCompletedExceptionally()) {
+            return false;
+        }
+        return !ready.isDone() || ready.join().isAlive();
+    }
+
+    @Override
+    public Optional<ProcessHandle> processHandle() {
+        return delegate().flatMap(DevProcess::processHandle);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        delegate().ifPresent(DeferredDevProcess::close);
+    }
+
+    private static void close(DevProcess process) {
+        try {
+            process.close();
+        } catch (IOException | RuntimeException e) {
+            LOG.debugf("Could not close the dev process of ''%s'': %s", process.workDir(), e.getMessage());
+        }
+    }
+}
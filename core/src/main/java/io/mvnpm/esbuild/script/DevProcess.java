@@ -2,16 +2,95 @@ package io.mvnpm.esbuild.script;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import io.mvnpm.esbuild.deno.ScriptLog;
+import io.mvnpm.esbuild.model.BundleResult;
+import io.mvnpm.esbuild.model.OutputFiles;
 
 public interface DevProcess extends Closeable {
     void init();
 
     void build() throws IOException;
 
+    /**
+     * Build after the given files changed. The build may be skipped when none of them can change the output (see the
+     * implementations).
+     *
+     * @param changed the changed files, an empty set always builds
+     */
+    default void build(Set<Path> changed) throws IOException {
+        build();
+    }
+
+    /**
+     * Initialize without blocking the calling thread.
+     *
+     * @return a future completed when the process is ready to build
+     */
+    default CompletableFuture<Void> initAsync() {
+        try {
+            init();
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Build without blocking the calling thread. Cancelling the returned future cancels the running build, the process
+     * stays alive for the next builds.
+     *
+     * @return the build result, completed exceptionally with a {@link io.mvnpm.esbuild.BundlingException} when the build
+     *         failed
+     */
+    default CompletableFuture<BundleResult> buildAsync() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                build();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new BundleResult(dist(), workDir(), new ScriptLog());
+        });
+    }
+
+    /**
+     * Same as {@link #buildAsync()} after the given files changed (see {@link #build(Set)}).
+     */
+    default CompletableFuture<BundleResult> buildAsync(Set<Path> changed) {
+        return buildAsync();
+    }
+
+    /**
+     * @return the files read by the last successful build (from the esbuild metafile), empty if unknown
+     */
+    default Set<Path> inputs() {
+        return Set.of();
+    }
+
+    /**
+     * @return the output files of the last successful in-memory build (see
+     *         {@link io.mvnpm.esbuild.model.BundleOptionsBuilder#withInMemoryOutput(boolean)}), empty if none
+     */
+    default OutputFiles outputFiles() {
+        return OutputFiles.empty();
+    }
+
     Path workDir();
 
     Path dist();
 
     boolean isAlive();
+
+    /**
+     * @return the process running the builds, if any
+     */
+    default Optional<ProcessHandle> processHandle() {
+        return Optional.empty();
+    }
 }
@@ -1,171 +1,168 @@
 package io.mvnpm.esbuild.script;
 
-import static io.mvnpm.esbuild.deno.DenoRunner.formatScript;
-
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.jboss.logging.Logger;
 
-import io.mvnpm.esbuild.deno.DenoRunner;
 import io.mvnpm.esbuild.deno.ScriptLog;
 import io.mvnpm.esbuild.model.BundleOptions;
+import io.mvnpm.esbuild.model.BundleResult;
+import io.mvnpm.esbuild.model.OutputFiles;
 
 /**
- * Calling build is Threadsafe as soon as init has been called before without a risk of race
+ * An esbuild context hosted by a {@link WorkerScript}, either its own or a shared one.
+ * <p>
+ * Calling build is Threadsafe as soon as init has been called before without a risk of race, concurrent build requests are
+ * debounced and coalesced by a {@link RebuildScheduler}.
  */
 public class DevScript implements DevProcess {
     private static final Logger LOG = Logger.getLogger(DevScript.class);
     private final Path workDir;
     private final BundleOptions bundleOptions;
     private final Path outDir;
-    private final AtomicReference<Process> process = new AtomicReference<>();
-    private final ReentrantLock lock = new ReentrantLock();
-
-    // language=JavaScript
-    private static final String SCRIPT = CommonScript.COMMON + """
-            const options = %s;
-            let context = null;
-
-            async function build () {
-                console.log("--BUILD--")
-                console.debug(`[DEBUG] Running EsBuild (${esbuild.version})`);
-                try {
-                    if (context == null) {
-                        context = await esbuild.context(applyPlugins(options));
-                    }
-                    await context.rebuild();
-                    console.log("[DEBUG] Bundling completed successfully");
-                    console.log("--BUILD-SUCCESS--");
-                } catch (err) {
-                    if (!err.errors) {
-                        // We only print non bundling error, because bundling errors are already printed
-                        console.log("[ERROR] EsBuild Error: " + cleanLog(err.message));
-                    }
-                    console.log("--BUILD-ERROR--");
-                }
-            }
-
-            async function close() {
-                console.log('[DEBUG] Closing Esbuild Dev.');
-                if (context) {
-                    await context.dispose();
-                    context = null;
-                    console.log('[DEBUG] Esbuild Dev closed.');
-                }
-                esbuild.stop();
-                process.exit(0);
-            };
-
-            const decoder = new TextDecoder();
-            const reader = Deno.stdin.readable.getReader();
-
-            const handlers = {
-              BUILD: async () => await build(),
-              CLOSE: async () => await close()
-            };
-
-            async function listenForTriggers() {
-              console.log("[DEBUG] Deno script is listening for Java events...");
-              console.log("--READY--");
-              try {
-                while (true) {
-                  const { value, done } = await reader.read();
-                  if (done) break;
-
-                  const message = decoder.decode(value).trim();
-                  if (!message) continue;
-
-                  console.log("[DEBUG] Deno script request received:", message);
-
-                  const [trigger, ...rest] = message.split(" ");
-                  const payload = rest.join(" ");
-
-                  const handler = handlers[trigger.toUpperCase()];
-                  if (handler) {
-                    try {
-                      await handler(payload);
-                    } catch (err) {
-                      console.log(`[ERROR] Handler for ${trigger} failed:`, cleanLog(err.stack));
-                    }
-                  } else {
-                    console.error(`[ERROR] Unknown trigger: "${trigger}"`);
-                  }
-                }
-              } catch (err) {
-                console.error("[ERROR] Error while reading stdin:", cleanLog(err.stack));
-              } finally {
-                reader.releaseLock();
-                console.log("[INFO] Listener stopped.");
-              }
-            }
-
-            await listenForTriggers();
-            """;
+    private final WorkerScript host;
+    private final AtomicReference<WorkerScript> worker = new AtomicReference<>();
+    private final RebuildScheduler scheduler;
+    private volatile String contextKey;
+    private volatile Set<Path> inputs = Set.of();
+    private volatile OutputFiles outputFiles = OutputFiles.empty();
 
     public DevScript(Path workDir, BundleOptions bundleOptions) {
+        this(workDir, bundleOptions, null);
+    }
+
+    /**
+     * @param workDir the work directory of the context
+     * @param bundleOptions the prepared bundle options
+     * @param host a shared worker hosting the context, or null to start a dedicated one
+     */
+    public DevScript(Path workDir, BundleOptions bundleOptions, WorkerScript host) {
+        if (host != null && !host.supports(bundleOptions)) {
+            throw new IllegalArgumentException(
+                    "The shared worker can only host contexts with the same runtime, plugins and node_modules directory");
+        }
         this.workDir = workDir;
         this.bundleOptions = bundleOptions;
+        this.host = host;
         final String out = bundleOptions.esBuildConfig().outdir() != null ? bundleOptions.esBuildConfig().outdir() : "dist";
         this.outDir = workDir.resolve(out);
+        this.scheduler = new RebuildScheduler(this::rebuild, bundleOptions.rebuildDebounce());
     }
 
     @Override
     public void init() {
-        if (process.get() != null) {
+        WorkerScript.await(initAsync(), timeoutSeconds());
+    }
+
+    @Override
+    public CompletableFuture<Void> initAsync() {
+        final WorkerScript w = host != null ? host : new WorkerScript(workDir, bundleOptions);
+        if (!worker.compareAndSet(null, w)) {
             throw new IllegalStateException("DevScript has already been initialized");
         }
-        lock.lock();
-        Thread destroyHook = null;
-        try {
-            final String scriptContent = formatScript(SCRIPT, workDir, bundleOptions);
-            final Process p = DenoRunner.devDenoScript(workDir, bundleOptions.nodeModulesDir(), scriptContent,
-                    bundleOptions.debugBuild());
-            process.set(p);
-            destroyHook = new Thread(p::destroyForcibly);
-            Runtime.getRuntime().addShutdownHook(destroyHook);
-            final ScriptLog log = DenoRunner.waitForResult(p, bundleOptions.debugBuild() ? -1 : bundleOptions.timeoutSeconds());
+        final CompletableFuture<ScriptLog> started = host == null ? w.start()
+                : CompletableFuture.completedFuture(new ScriptLog());
+        final String key = w.newContextKey();
+        return started.thenCompose(log -> {
+            log.logAll();
+            return w.context(key, workDir, bundleOptions);
+        }).thenAccept(log -> {
             log.logAll();
+            contextKey = key;
+        });
+    }
+
+    @Override
+    public void build() throws IOException {
+        build(Set.of());
+    }
+
+    /**
+     * The build is skipped when there are no plugins and none of the changed files is an input of the previous successful
+     * build (or a package.json/tsconfig.json).
+     */
+    @Override
+    public void build(Set<Path> changed) throws IOException {
+        checkAlive();
+        WorkerScript.await(scheduler.request(changed), timeoutSeconds());
+    }
+
+    @Override
+    public CompletableFuture<BundleResult> buildAsync() {
+        return buildAsync(Set.of());
+    }
+
+    @Override
+    public CompletableFuture<BundleResult> buildAsync(Set<Path> changed) {
+        try {
+            checkAlive();
         } catch (IOException e) {
-            throw new RuntimeException(e);
-        } finally {
-            if (destroyHook != null) {
-                Runtime.getRuntime().removeShutdownHook(destroyHook);
-            }
-            lock.unlock();
+            return CompletableFuture.failedFuture(e);
         }
+        return scheduler.request(changed);
     }
 
     @Override
-    public void build() throws IOException {
-        if (process.get() == null) {
+    public Set<Path> inputs() {
+        return inputs;
+    }
+
+    @Override
+    public OutputFiles outputFiles() {
+        return outputFiles;
+    }
+
+    /**
+     * @return the statistics of the rebuilds, with the number of build requests each rebuild absorbed
+     */
+    public RebuildScheduler.Stats rebuildStats() {
+        return scheduler.stats();
+    }
+
+    private CompletableFuture<BundleResult> rebuild(Set<Path> changed) {
+        final WorkerScript w = worker.get();
+        final String key = contextKey;
+        if (key == null || !w.isAlive()) {
+            return CompletableFuture.failedFuture(new IOException("DevScript process is closed"));
+        }
+        final CompletableFuture<BundleResult> result = w.rebuildResponse(key, changed).thenApply(response -> {
+            if (response.json().has("inputs")) {
+                final Set<Path> files = new HashSet<>();
+                response.json().path("inputs").forEach(input -> files.add(Path.of(input.asText())));
+                inputs = Set.copyOf(files);
+            }
+            if (bundleOptions.inMemoryOutput() && !response.json().path("skipped").asBoolean()) {
+                outputFiles = response.outputFiles(outDir);
+            }
+            final ScriptLog log = WorkerScript.toLog(response);
+            log.logAll();
+            return new BundleResult(outDir, workDir, log, outputFiles);
+        });
+        result.whenComplete((r, e) -> {
+            if (result.isCancelled() && w.isAlive()) {
+                w.cancel(key);
+            }
+        });
+        return result;
+    }
+
+    private void checkAlive() throws IOException {
+        if (worker.get() == null) {
             throw new IllegalStateException("DevScript has not been initialized");
         }
         if (!isAlive()) {
             throw new IOException("DevScript process is closed");
         }
-        lock.lock();
-        try {
-            invokeBuild();
-        } finally {
-            lock.unlock();
-        }
     }
 
-    private void invokeBuild() {
-        final Process p = process.get();
-        try {
-            BufferedWriter bufferedWriter = p.outputWriter();
-            bufferedWriter.write("BUILD");
-            bufferedWriter.flush();
-            final ScriptLog log = DenoRunner.waitForResult(p, bundleOptions.debugBuild() ? -1 : bundleOptions.timeoutSeconds());
-            log.logAll();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    private long timeoutSeconds() {
+        return bundleOptions.debugBuild() ? -1 : bundleOptions.timeoutSeconds();
     }
 
     @Override
@@ -178,28 +175,34 @@ public class DevScript implements DevProcess {
         return outDir;
     }
 
+    @Override
+    public Optional<ProcessHandle> processHandle() {
+        final WorkerScript w = worker.get();
+        return w == null ? Optional.empty() : w.processHandle();
+    }
+
     @Override
     public boolean isAlive() {
-        return process.get() != null && process.get().isAlive();
+        final WorkerScript w = worker.get();
+        return w != null && contextKey != null && w.isAlive();
     }
 
     @Override
     public void close() {
-        lock.lock();
-        try {
-            final Process p = this.process.getAndSet(null);
-            if (p != null && p.isAlive()) {
-                try (BufferedWriter bufferedWriter = p.outputWriter()) {
-                    bufferedWriter.write("CLOSE");
-                    bufferedWriter.flush();
-                    final ScriptLog log = DenoRunner.waitForExit(p, 3);
-                    log.logAll();
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
+        final String key = contextKey;
+        contextKey = null;
+        final WorkerScript w = worker.get();
+        if (w == null) {
+            return;
+        }
+        if (w != host) {
+            w.close();
+        } else if (key != null && w.isAlive()) {
+            try {
+                WorkerScript.await(w.dispose(key), 3).logAll();
+            } catch (RuntimeException e) {
+                LOG.debugf("Could not dispose context ''%s'': %s", key, e.getMessage());
             }
-        } finally {
-            lock.unlock();
         }
     }
 
@@ -0,0 +1,168 @@
+package io.mvnpm.esbuild.script;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.jboss.logging.Logger;
+
+import io.mvnpm.esbuild.model.BundleResult;
+
+/**
+ * Debounce and coalesce the build requests of a dev process.
+ * <p>
+ * A rebuild starts once no request was received during the debounce window. The requests received in the meantime, or
+ * while a rebuild is running, are coalesced into the next rebuild and all their callers share its result. The changed files
+ * of the coalesced requests are merged, a request without changed files makes the rebuild unconditional.
+ */
+public class RebuildScheduler {
+    private static final Logger LOG = Logger.getLogger(RebuildScheduler.class);
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "RebuildScheduler-Timer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * @param rebuilds the number of rebuilds started
+     * @param requests the number of build requests received
+     * @param lastAbsorbed the number of requests coalesced into the last rebuild
+     * @param maxAbsorbed the highest number of requests coalesced into a single rebuild
+     */
+    public record Stats(long rebuilds, long requests, int lastAbsorbed, int maxAbsorbed) {
+    }
+
+    private final Function<Set<Path>, CompletableFuture<BundleResult>> build;
+    private final long debounceMillis;
+    private Batch pending;
+    private ScheduledFuture<?> timer;
+    private boolean running;
+    private long rebuilds;
+    private long requests;
+    private int lastAbsorbed;
+    private int maxAbsorbed;
+
+    /**
+     * @param build starts a rebuild for the given changed files
+     * @param debounce the quiet period before a rebuild starts, no wait if null or zero
+     */
+    public RebuildScheduler(Function<Set<Path>, CompletableFuture<BundleResult>> build, Duration debounce) {
+        this.build = build;
+        this.debounceMillis = debounce == null ? 0 : Math.max(0, debounce.toMillis());
+    }
+
+    /**
+     * Request a rebuild.
+     *
+     * @param changed the changed files, empty when unknown
+     * @return the result of the rebuild including this request. Cancelling it cancels the rebuild when no other caller
+     *         waits for it
+     */
+    public synchronized CompletableFuture<BundleResult> request(Set<Path> changed) {
+        requests++;
+        if (pending == null) {
+            pending = new Batch();
+        }
+        final Batch batch = pending;
+        batch.add(changed);
+        if (!running) {
+            schedule();
+        }
+        final CompletableFuture<BundleResult> result = batch.result.copy();
+        result.whenComplete((r, e) -> {
+            if (result.isCancelled()) {
+                onCancel(batch);
+            }
+        });
+        return result;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(rebuilds, requests, lastAbsorbed, maxAbsorbed);
+    }
+
+    private void schedule() {
+        if (timer != null) {
+            timer.cancel(false);
+        }
+        timer = TIMER.schedule(this::fire, debounceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void fire() {
+        final Batch batch;
+        synchronized (this) {
+            timer = null;
+            if (running || pending == null) {
+                return;
+            }
+            batch = pending;
+            pending = null;
+            running = true;
+            rebuilds++;
+            lastAbsorbed = batch.requests;
+            maxAbsorbed = Math.max(maxAbsorbed, batch.requests);
+            LOG.debugf("Starting a rebuild for %d coalesced request(s)", batch.requests);
+            try {
+                batch.build = build.apply(batch.full ? Set.of() : Set.copyOf(batch.changed));
+            } catch (RuntimeException e) {
+                batch.build = CompletableFuture.failedFuture(e);
+            }
+        }
+        batch.build.whenComplete((r, e) -> {
+            synchronized (this) {
+                running = false;
+                if (pending != null && timer == null) {
+                    // The requests received during the rebuild already waited for it
+                    timer = TIMER.schedule(this::fire, 0, TimeUnit.MILLISECONDS);
+                }
+            }
+            if (e != null) {
+                batch.result.completeExceptionally(e);
+            } else {
+                batch.result.complete(r);
+            }
+        });
+    }
+
+    private synchronized void onCancel(Batch batch) {
+        batch.cancelled++;
+        if (batch.cancelled < batch.requests) {
+            return;
+        }
+        if (batch.build != null) {
+            batch.build.cancel(false);
+        } else if (batch == pending) {
+            pending = null;
+            if (timer != null) {
+                timer.cancel(false);
+                timer = null;
+            }
+            batch.result.cancel(false);
+        }
+    }
+
+    private static final class Batch {
+        final CompletableFuture<BundleResult> result = new CompletableFuture<>();
+        final Set<Path> changed = new HashSet<>();
+        boolean full;
+        int requests;
+        int cancelled;
+        CompletableFuture<BundleResult> build;
+
+        void add(Set<Path> files) {
+            requests++;
+            if (files == null || files.isEmpty()) {
+                full = true;
+            } else {
+                changed.addAll(files);
+            }
+        }
+    }
+}
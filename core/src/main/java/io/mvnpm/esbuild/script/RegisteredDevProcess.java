@@ -0,0 +1,228 @@
+package io.mvnpm.esbuild.script;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.jboss.logging.Logger;
+
+import io.mvnpm.esbuild.deno.ProcessRegistry;
+import io.mvnpm.esbuild.model.BundleResult;
+import io.mvnpm.esbuild.model.OutputFiles;
+
+/**
+ * A dev process tracked by a {@link ProcessRegistry}, its delegate is closed when the registry evicts it and a new one is
+ * started on the next build.
+ * <p>
+ * The build following an eviction is a full build because the new esbuild context has no previous build. The inputs and
+ * output files of the evicted delegate are kept until then.
+ */
+public class RegisteredDevProcess implements DevProcess, ProcessRegistry.Evictable {
+    private static final Logger LOG = Logger.getLogger(RegisteredDevProcess.class);
+    private final SupervisedDevProcess.Factory factory;
+    private final ProcessRegistry registry;
+    private final long timeoutSeconds;
+    private final Path workDir;
+    private final Path dist;
+    private volatile DevProcess delegate;
+    private CompletableFuture<Void> ready;
+    private ProcessRegistry.Registration registration;
+    private Set<Path> inputs = Set.of();
+    private OutputFiles outputFiles = OutputFiles.empty();
+    private long revivals;
+    private boolean closed;
+
+    /**
+     * @param factory creates the dev process, and a new one after each eviction
+     * @param registry the registry tracking the process
+     * @param timeoutSeconds the timeout of the blocking calls, no timeout if lower or equal to 0
+     */
+    public RegisteredDevProcess(SupervisedDevProcess.Factory factory, ProcessRegistry registry, long timeoutSeconds)
+            throws IOException {
+        this.factory = factory;
+        this.registry = registry;
+        this.timeoutSeconds = timeoutSeconds;
+        this.delegate = factory.create();
+        this.workDir = delegate.workDir();
+        this.dist = delegate.dist();
+    }
+
+    @Override
+    public void init() {
+        WorkerScript.await(initAsync(), timeoutSeconds);
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> initAsync() {
+        if (registration != null) {
+            throw new IllegalStateException("RegisteredDevProcess has already been initialized");
+        }
+        return start(delegate);
+    }
+
+    private CompletableFuture<Void> start(DevProcess process) {
+        final ProcessRegistry.Registration started = registry.register(workDir.toString(), this);
+        registration = started;
+        CompletableFuture<Void> init;
+        try {
+            init = process.initAsync();
+        } catch (RuntimeException e) {
+            init = CompletableFuture.failedFuture(e);
+        }
+        ready = init.whenComplete((r, e) -> {
+            started.release();
+            if (e != null) {
+                started.close();
+            }
+        });
+        return ready;
+    }
+
+    @Override
+    public void build() throws IOException {
+        build(Set.of());
+    }
+
+    @Override
+    public void build(Set<Path> changed) throws IOException {
+        try {
+            WorkerScript.await(buildAsync(changed), timeoutSeconds);
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<BundleResult> buildAsync() {
+        return buildAsync(Set.of());
+    }
+
+    @Override
+    public CompletableFuture<BundleResult> buildAsync(Set<Path> changed) {
+        final DevProcess process;
+        final CompletableFuture<Void> processReady;
+        final ProcessRegistry.Registration used;
+        boolean revived = false;
+        synchronized (this) {
+            if (registration == null) {
+                throw new IllegalStateException("RegisteredDevProcess has not been initialized");
+            }
+            if (closed) {
+                return CompletableFuture.failedFuture(new IOException("RegisteredDevProcess is closed"));
+            }
+            while (delegate == null || !registration.acquire()) {
+                try {
+                    revive();
+                } catch (IOException e) {
+                    return CompletableFuture.failedFuture(e);
+                }
+                revived = true;
+            }
+            process = delegate;
+            processReady = ready;
+            used = registration;
+        }
+        // The new context has no previous build, so the build after a revival is a full build
+        final Set<Path> files = revived ? Set.of() : changed;
+        final CompletableFuture<BundleResult> result = processReady.thenCompose(r -> process.buildAsync(files));
+        result.whenComplete((r, e) -> used.release());
+        final CompletableFuture<BundleResult> copy = result.copy();
+        copy.whenComplete((r, e) -> {
+            if (copy.isCancelled()) {
+                result.cancel(false);
+            }
+        });
+        return copy;
+    }
+
+    private void revive() throws IOException {
+        closeDelegate();
+        revivals++;
+        LOG.debugf("Reviving the evicted dev process of ''%s''", workDir);
+        delegate = factory.create();
+        start(delegate);
+    }
+
+    /**
+     * Close the delegate when its registration has been evicted, it is revived on the next build.
+     */
+    @Override
+    public synchronized void evict() {
+        if (registration == null || !registration.isClosed() || closed) {
+            return;
+        }
+        LOG.debugf("The dev process of ''%s'' has been evicted", workDir);
+        closeDelegate();
+    }
+
+    private void closeDelegate() {
+        final DevProcess d = delegate;
+        if (d == null) {
+            return;
+        }
+        delegate = null;
+        inputs = d.inputs();
+        outputFiles = d.outputFiles();
+        try {
+            d.close();
+        } catch (IOException | RuntimeException e) {
+            LOG.debugf("Could not close the dev process of ''%s'': %s", workDir, e.getMessage());
+        }
+    }
+
+    /**
+     * @return the number of processes started after an eviction
+     */
+    public synchronized long revivals() {
+        return revivals;
+    }
+
+    @Override
+    public synchronized Set<Path> inputs() {
+        return delegate != null && !delegate.inputs().isEmpty() ? delegate.inputs() : inputs;
+    }
+
+    @Override
+    public synchronized OutputFiles outputFiles() {
+        return delegate != null && !delegate.outputFiles().isEmpty() ? delegate.outputFiles() : outputFiles;
+    }
+
+    @Override
+    public Path workDir() {
+        return workDir;
+    }
+
+    @Override
+    public Path dist() {
+        return dist;
+    }
+
+    /**
+     * @return true until closed once initialized, an evicted delegate is revived on the next build
+     */
+    @Override
+    public synchronized boolean isAlive() {
+        return registration != null && !closed;
+    }
+
+    @Override
+    public Optional<ProcessHandle> processHandle() {
+        // Not synchronized, the registry reads it while the process may be reviving
+        final DevProcess d = delegate;
+        return d == null ? Optional.empty() : d.processHandle();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (registration != null) {
+            registration.close();
+        }
+        closeDelegate();
+    }
+}
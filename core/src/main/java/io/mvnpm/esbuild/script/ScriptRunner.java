@@ -8,6 +8,8 @@ import org.jboss.logging.Logger;
 import io.mvnpm.esbuild.deno.ScriptLog;
 import io.mvnpm.esbuild.model.BundleOptions;
 import io.mvnpm.esbuild.model.EsBuildConfig;
+import io.mvnpm.esbuild.runtime.EsBuildRuntime;
+import io.mvnpm.esbuild.runtime.Runtimes;
 
 public class ScriptRunner {
 
@@ -28,12 +30,30 @@ public class ScriptRunner {
         return workDir.resolve(out);
     }
 
+    /**
+     * Run a one-shot build on the selected runtime (see {@link Runtimes#select}).
+     */
     public ScriptLog build() throws IOException {
-        return BuildScript.build(workDir, nodeModulesDir, bundleOptions);
+        final EsBuildRuntime runtime = Runtimes.select(nodeModulesDir, bundleOptions);
+        LOG.debugf("Building ''%s'' with the %s runtime", workDir, runtime.name());
+        return runtime.build(workDir, nodeModulesDir, bundleOptions.edit().withRuntime(runtime).build());
     }
 
+    public ScriptLog build(WorkerPool workerPool) throws IOException {
+        return workerPool.build(workDir, bundleOptions);
+    }
+
+    /**
+     * Create a dev process on the selected runtime (see {@link Runtimes#select}).
+     */
     public DevProcess dev() throws IOException {
-        return new DevScript(workDir, bundleOptions);
+        final EsBuildRuntime runtime = Runtimes.select(nodeModulesDir, bundleOptions);
+        LOG.debugf("Starting dev of ''%s'' with the %s runtime", workDir, runtime.name());
+        return runtime.dev(workDir, nodeModulesDir, bundleOptions.edit().withRuntime(runtime).build());
+    }
+
+    public DevProcess dev(WorkerScript host) throws IOException {
+        return new DevScript(workDir, bundleOptions, host);
     }
 
 }
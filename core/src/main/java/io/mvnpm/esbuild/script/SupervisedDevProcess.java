@@ -0,0 +1,322 @@
+package io.mvnpm.esbuild.script;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.logging.Logger;
+
+import io.mvnpm.esbuild.model.BundleResult;
+import io.mvnpm.esbuild.model.OutputFiles;
+
+/**
+ * A dev process which restarts its delegate when it dies (e.g. an out-of-memory error or a plugin crash).
+ * <p>
+ * A new delegate is created from the same options, with an exponential backoff between consecutive restarts. A build
+ * running when the delegate dies, or requested while it is dead, is replayed on the new delegate once it is ready. The
+ * replayed build is a full build because the new esbuild context has no previous build. Build failures of a live delegate
+ * are not retried.
+ */
+public class SupervisedDevProcess implements DevProcess {
+    private static final Logger LOG = Logger.getLogger(SupervisedDevProcess.class);
+
+    /**
+     * Creates the supervised dev processes, not initialized.
+     */
+    @FunctionalInterface
+    public interface Factory {
+        DevProcess create() throws IOException;
+    }
+
+    /**
+     * @param restarts the number of restarts
+     * @param consecutiveFailures the number of restarts since the last successful build
+     * @param lastRestartLatency the time from the detection of the last dead process to its replacement being ready
+     * @param totalRestartLatency the sum of all the restart latencies
+     */
+    public record Stats(long restarts, int consecutiveFailures, Duration lastRestartLatency, Duration totalRestartLatency) {
+    }
+
+    private final Factory factory;
+    private final long timeoutSeconds;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final int maxAttempts;
+    private final DevProcess first;
+    private CompletableFuture<DevProcess> current;
+    private long restarts;
+    private int consecutiveFailures;
+    private long lastRestartNanos;
+    private long totalRestartNanos;
+    private volatile boolean closed;
+
+    /**
+     * Supervise with a backoff from 200ms to 10s and 3 attempts per build.
+     *
+     * @param factory creates the dev process and its replacements
+     * @param timeoutSeconds the timeout of the blocking calls, no timeout if lower or equal to 0
+     */
+    public SupervisedDevProcess(Factory factory, long timeoutSeconds) throws IOException {
+        this(factory, timeoutSeconds, Duration.ofMillis(200), Duration.ofSeconds(10), 3);
+    }
+
+    /**
+     * @param factory creates the dev process and its replacements
+     * @param timeoutSeconds the timeout of the blocking calls, no timeout if lower or equal to 0
+     * @param initialBackoff the delay before the first restart, doubled for each consecutive restart
+     * @param maxBackoff the maximum delay before a restart
+     * @param maxAttempts the maximum number of processes a build is attempted on
+     */
+    public SupervisedDevProcess(Factory factory, long timeoutSeconds, Duration initialBackoff, Duration maxBackoff,
+            int maxAttempts) throws IOException {
+        this.factory = factory;
+        this.timeoutSeconds = timeoutSeconds;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.first = factory.create();
+    }
+
+    @Override
+    public void init() {
+        WorkerScript.await(initAsync(), timeoutSeconds);
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> initAsync() {
+        if (current != null) {
+            throw new IllegalStateException("SupervisedDevProcess has already been initialized");
+        }
+        current = initialize(first);
+        return current.thenApply(p -> null);
+    }
+
+    @Override
+    public void build() throws IOException {
+        build(Set.of());
+    }
+
+    @Override
+    public void build(Set<Path> changed) throws IOException {
+        try {
+            WorkerScript.await(buildAsync(changed), timeoutSeconds);
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<BundleResult> buildAsync() {
+        return buildAsync(Set.of());
+    }
+
+    @Override
+    public CompletableFuture<BundleResult> buildAsync(Set<Path> changed) {
+        final CompletableFuture<BundleResult> result = new CompletableFuture<>();
+        attempt(changed, 1, result);
+        return result;
+    }
+
+    private void attempt(Set<Path> changed, int attempt, CompletableFuture<BundleResult> result) {
+        final CompletableFuture<DevProcess> ready;
+        try {
+            ready = ready();
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        ready.whenComplete((process, startFailure) -> {
+            if (result.isDone()) {
+                return;
+            }
+            if (startFailure != null) {
+                if (attempt < maxAttempts && !closed) {
+                    attempt(Set.of(), attempt + 1, result);
+                } else {
+                    result.completeExceptionally(unwrap(startFailure));
+                }
+                return;
+            }
+            final CompletableFuture<BundleResult> build = process.buildAsync(changed);
+            result.whenComplete((r, e) -> {
+                if (result.isCancelled()) {
+                    build.cancel(false);
+                }
+            });
+            build.whenComplete((r, e) -> {
+                if (e == null) {
+                    onSuccess();
+                    result.complete(r);
+                } else if (!closed && !build.isCancelled() && !process.isAlive() && attempt < maxAttempts) {
+                    LOG.warnf("The dev process of ''%s'' died during a build, restarting it and replaying the build",
+                            process.workDir());
+                    // The new context has no previous build, so the replay is a full build
+                    attempt(Set.of(), attempt + 1, result);
+                } else {
+                    result.completeExceptionally(unwrap(e));
+                }
+            });
+        });
+    }
+
+    /**
+     * @return the live process, a replacement is started if it died
+     */
+    private synchronized CompletableFuture<DevProcess> ready() {
+        if (current == null) {
+            throw new IllegalStateException("SupervisedDevProcess has not been initialized");
+        }
+        if (closed) {
+            return CompletableFuture.failedFuture(new IOException("SupervisedDevProcess is closed"));
+        }
+        if (current.isDone() && (current.isCompletedExceptionally() || !current.join().isAlive())) {
+            restart();
+        }
+        return current;
+    }
+
+    private synchronized void restart() {
+        final DevProcess dead = current.isCompletedExceptionally() ? null : current.join();
+        if (dead != null) {
+            CompletableFuture.runAsync(() -> closeQuietly(dead));
+        }
+        consecutiveFailures++;
+        final long delay = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(consecutiveFailures - 1, 20));
+        final long start = System.nanoTime();
+        LOG.infof("Restarting the dev process of ''%s'' in %dms (restart %d)", first.workDir(), delay, restarts + 1);
+        final Executor executor = CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS);
+        current = CompletableFuture.supplyAsync(() -> {
+            try {
+                return factory.create();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor).thenCompose(this::initialize).whenComplete((p, e) -> {
+            synchronized (this) {
+                restarts++;
+                lastRestartNanos = System.nanoTime() - start;
+                totalRestartNanos += lastRestartNanos;
+            }
+            if (e != null) {
+                LOG.warnf("Could not restart the dev process of ''%s'': %s", first.workDir(), unwrap(e).getMessage());
+            }
+        });
+    }
+
+    private CompletableFuture<DevProcess> initialize(DevProcess process) {
+        final CompletableFuture<Void> init;
+        try {
+            init = process.initAsync();
+        } catch (RuntimeException e) {
+            closeQuietly(process);
+            return CompletableFuture.failedFuture(e);
+        }
+        return init.handle((r, e) -> {
+            if (e != null) {
+                closeQuietly(process);
+                throw e instanceof CompletionException c ? c : new CompletionException(e);
+            }
+            // Restart eagerly, so that the next build does not wait for it
+            process.processHandle().ifPresent(handle -> handle.onExit().thenRun(() -> onExit(process)));
+            return process;
+        });
+    }
+
+    private synchronized void onExit(DevProcess process) {
+        if (!closed && current != null && current.isDone() && !current.isCompletedExceptionally()
+                && current.join() == process) {
+            LOG.warnf("The dev process of ''%s'' exited unexpectedly", process.workDir());
+            restart();
+        }
+    }
+
+    private synchronized void onSuccess() {
+        consecutiveFailures = 0;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(restarts, consecutiveFailures, Duration.ofNanos(lastRestartNanos),
+                Duration.ofNanos(totalRestartNanos));
+    }
+
+    private DevProcess delegate() {
+        synchronized (this) {
+            if (current != null && current.isDone() && !current.isCompletedExceptionally()) {
+                return current.join();
+            }
+        }
+        return first;
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private static void closeQuietly(DevProcess process) {
+        try {
+            process.close();
+        } catch (IOException | RuntimeException e) {
+            LOG.debugf("Could not close the dev process of ''%s'': %s", process.workDir(), e.getMessage());
+        }
+    }
+
+    @Override
+    public Set<Path> inputs() {
+        return delegate().inputs();
+    }
+
+    @Override
+    public OutputFiles outputFiles() {
+        return delegate().outputFiles();
+    }
+
+    @Override
+    public Path workDir() {
+        return first.workDir();
+    }
+
+    @Override
+    public Path dist() {
+        return first.dist();
+    }
+
+    /**
+     * @return true until closed once initialized, a dead delegate is restarted on the next build
+     */
+    @Override
+    public synchronized boolean isAlive() {
+        return current != null && !closed;
+    }
+
+    @Override
+    public Optional<ProcessHandle> processHandle() {
+        return delegate().processHandle();
+    }
+
+    @Override
+    public void close() {
+        final CompletableFuture<DevProcess> last;
+        synchronized (this) {
+            closed = true;
+            last = current;
+        }
+        if (last == null) {
+            closeQuietly(first);
+        } else if (last.isDone()) {
+            if (!last.isCompletedExceptionally()) {
+                closeQuietly(last.join());
+            }
+        } else {
+            last.thenAccept(SupervisedDevProcess::closeQuietly);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package io.mvnpm.esbuild.script;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.logging.Logger;
+
+import io.mvnpm.esbuild.BundlingException;
+import io.mvnpm.esbuild.deno.ScriptLog;
+import io.mvnpm.esbuild.model.BundleOptions;
+import io.mvnpm.esbuild.model.EsBuildPlugin;
+import io.mvnpm.esbuild.runtime.Runtimes;
+
+/**
+ * A pool of warm {@link WorkerScript} to avoid starting a new Deno process (and esbuild service) for each production build.
+ * <p>
+ * Workers are bound to a node_modules directory, a JS runtime and a set of plugins, any other option (including the work
+ * directory) can change between builds. Workers which are idle for too long are closed and idle workers are regularly checked
+ * for health.
+ */
+public class WorkerPool implements Closeable {
+    private static final Logger LOG = Logger.getLogger(WorkerPool.class);
+
+    /**
+     * @param size the maximum number of live workers
+     * @param idleTimeout the duration after which an idle worker is closed
+     * @param healthCheckInterval the interval between two health checks (and idle evictions)
+     */
+    public record Config(int size, Duration idleTimeout, Duration healthCheckInterval) {
+
+        public Config {
+            if (size < 1) {
+                throw new IllegalArgumentException("The worker pool size must be at least 1");
+            }
+        }
+
+        public static Config defaults() {
+            return new Config(Runtime.getRuntime().availableProcessors(), Duration.ofMinutes(5), Duration.ofSeconds(30));
+        }
+    }
+
+    private record Key(Path nodeModulesDir, List<EsBuildPlugin> plugins, String runtime) {
+        static Key of(BundleOptions bundleOptions) {
+            return new Key(bundleOptions.nodeModulesDir().toAbsolutePath().normalize(),
+                    List.copyOf(bundleOptions.plugins()),
+                    Runtimes.jsRuntime(bundleOptions).name());
+        }
+    }
+
+    private final Config config;
+    private final Map<Key, Deque<WorkerScript>> idle = new HashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final Thread shutdownHook = new Thread(this::close);
+    private int live;
+    private boolean closed;
+
+    public WorkerPool(Config config) {
+        this.config = config;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            t.setName("WorkerPool-Thread");
+            return t;
+        });
+        final long interval = config.healthCheckInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::check, interval, interval, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    public WorkerPool() {
+        this(Config.defaults());
+    }
+
+    /**
+     * Run a production build on a warm worker, a new worker is started when none is available for those options.
+     *
+     * @param workDir the work directory of the build
+     * @param bundleOptions the prepared bundle options
+     * @return the build logs
+     */
+    public ScriptLog build(Path workDir, BundleOptions bundleOptions) throws IOException {
+        final Key key = Key.of(bundleOptions);
+        final WorkerScript worker = acquire(key, bundleOptions);
+        try {
+            return worker.build(workDir, bundleOptions);
+        } finally {
+            release(key, worker);
+        }
+    }
+
+    private WorkerScript acquire(Key key, BundleOptions bundleOptions) {
+        WorkerScript evicted = null;
+        synchronized (this) {
+            while (true) {
+                if (closed) {
+                    throw new IllegalStateException("WorkerPool is closed");
+                }
+                final Deque<WorkerScript> workers = idle.get(key);
+                while (workers != null && !workers.isEmpty()) {
+                    final WorkerScript worker = workers.pollFirst();
+                    if (worker.isAlive()) {
+                        return worker;
+                    }
+                    live--;
+                }
+                if (live < config.size()) {
+                    live++;
+                    break;
+                }
+                evicted = evictLeastRecentlyUsed();
+                if (evicted != null) {
+                    live++;
+                    break;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new BundlingException("Interrupted while waiting for a Deno worker");
+                }
+            }
+        }
+        if (evicted != null) {
+            // Not under the lock, closing waits for the process to exit
+            LOG.debugf("Evicting Deno worker in ''%s'' to make room for a new one", evicted.workDir());
+            evicted.close();
+        }
+        // Not started in the work directory of the build, which may be deleted while the worker is idle
+        final Path workerDir = key.nodeModulesDir().getParent();
+        final WorkerScript worker = new WorkerScript(workerDir, bundleOptions);
+        try {
+            LOG.debugf("Starting a new Deno worker in ''%s''", workerDir);
+            worker.init();
+            return worker;
+        } catch (RuntimeException e) {
+            worker.close();
+            synchronized (this) {
+                live--;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    private synchronized void release(Key key, WorkerScript worker) {
+        if (closed || !worker.isAlive()) {
+            live--;
+            worker.close();
+        } else {
+            idle.computeIfAbsent(key, k -> new ArrayDeque<>()).addFirst(worker);
+        }
+        notifyAll();
+    }
+
+    /**
+     * @return the least recently used idle worker, removed from the pool and to be closed by the caller, or null if none
+     */
+    private WorkerScript evictLeastRecentlyUsed() {
+        final Optional<Deque<WorkerScript>> oldest = idle.values().stream()
+                .filter(d -> !d.isEmpty())
+                .min(Comparator.comparingLong(d -> d.peekLast().lastUsed()));
+        if (oldest.isEmpty()) {
+            return null;
+        }
+        live--;
+        return oldest.get().pollLast();
+    }
+
+    private void check() {
+        final List<WorkerScript> toCheck = new ArrayList<>();
+        final List<WorkerScript> toClose = new ArrayList<>();
+        synchronized (this) {
+            final long now = System.currentTimeMillis();
+            for (Deque<WorkerScript> workers : idle.values()) {
+                workers.removeIf(worker -> {
+                    if (now - worker.lastUsed() > config.idleTimeout().toMillis() || !worker.isAlive()) {
+                        toClose.add(worker);
+                        return true;
+                    }
+                    toCheck.add(worker);
+                    return false;
+                });
+            }
+            idle.values().removeIf(Deque::isEmpty);
+            live -= toClose.size();
+            notifyAll();
+        }
+        for (WorkerScript worker : toClose) {
+            LOG.debugf("Closing idle Deno worker in ''%s''", worker.workDir());
+            worker.close();
+        }
+        for (WorkerScript worker : toCheck) {
+            // a worker which fails the health check is destroyed and removed on next acquire or check
+            worker.ping(5);
+        }
+    }
+
+    /**
+     * @return the number of live workers (idle or building)
+     */
+    public synchronized int size() {
+        return live;
+    }
+
+    @Override
+    public void close() {
+        final List<WorkerScript> toClose = new ArrayList<>();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            idle.values().forEach(toClose::addAll);
+            idle.clear();
+            live -= toClose.size();
+            notifyAll();
+        }
+        scheduler.shutdownNow();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // already shutting down
+        }
+        toClose.forEach(WorkerScript::close);
+    }
+}
@@ -0,0 +1,740 @@
+package io.mvnpm.esbuild.script;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.jboss.logging.Logger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.mvnpm.esbuild.BundlingException;
+import io.mvnpm.esbuild.deno.DenoRunner;
+import io.mvnpm.esbuild.deno.ScriptLog;
+import io.mvnpm.esbuild.model.BundleOptions;
+import io.mvnpm.esbuild.model.EsBuildPlugin;
+import io.mvnpm.esbuild.model.OutputFiles;
+import io.mvnpm.esbuild.runtime.JsRuntime;
+import io.mvnpm.esbuild.runtime.Runtimes;
+
+/**
+ * A long-lived JS runtime process (Deno by default) which runs esbuild builds on request.
+ * <p>
+ * Requests and responses carry a correlation id, so several builds and several esbuild contexts can run concurrently in
+ * the same process. Each request gets its own {@link CompletableFuture}. The work directory of each build is sent along
+ * with its options, so one worker can host the contexts of many bundles sharing the same node_modules and plugins.
+ * <p>
+ * Requests (stdin) are length prefixed JSON frames. Responses (stdout) are length prefixed frames holding the length of the
+ * JSON, the JSON and the contents of the output files of in-memory builds, so that they are not base64 encoded. The logs of
+ * the process are read from stderr.
+ * <p>
+ * The script never changes, it is written once per version in node_modules (see {@link #runnerScript(Path)}) so that the
+ * runtime compile cache stays warm. The color support and the plugins are sent with the first "init" request.
+ */
+public class WorkerScript implements Closeable {
+    private static final Logger LOG = Logger.getLogger(WorkerScript.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    // The requests marking the worker as used, see lastUsed()
+    private static final Set<String> USES = Set.of("build", "context", "rebuild");
+    private final Path workDir;
+    private final BundleOptions bundleOptions;
+    private final JsRuntime runtime;
+    private final AtomicReference<Process> process = new AtomicReference<>();
+    private final Map<Long, CompletableFuture<Response>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicLong contextKeys = new AtomicLong();
+    private DataOutputStream requests;
+    // Completed when the worker output is closed, the pending requests are failed then
+    private volatile CompletableFuture<Void> responses;
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    // language=JavaScript
+    private static final String SCRIPT = CommonScript.COMMON + """
+            // stdout is reserved to the response frames
+            console.log = console.error;
+            console.info = console.error;
+            console.debug = console.error;
+            console.warn = console.error;
+
+            const contexts = new Map();
+
+            async function init(request) {
+                await configure(request);
+                return { success: true, logs: [] };
+            }
+
+            function withWorkDir(request) {
+                const options = request.options;
+                options.absWorkingDir = request.workDir;
+                return options;
+            }
+
+            async function build(request) {
+                const sink = { logs: [] };
+                console.log(`[DEBUG] Running EsBuild (${esbuild.version})`);
+                try {
+                    await esbuild.build(applyPlugins(withWorkDir(request), sink));
+                    log(sink, 'DEBUG', 'Bundling completed successfully');
+                    return { success: true, logs: sink.logs };
+                } catch (err) {
+                    if (!err.errors) {
+                        // We only add non bundling error, because bundling errors are already captured
+                        log(sink, 'ERROR', 'EsBuild Error: ' + err.message);
+                    }
+                    return { success: false, logs: sink.logs };
+                }
+            }
+
+            function context(request) {
+                // The esbuild context is created lazily on the first rebuild
+                contexts.set(request.key, { options: withWorkDir(request), context: null, logs: [] });
+                return { success: true, logs: [] };
+            }
+
+            // Changes to those files may change the module resolution without being an input of the build
+            const RESOLUTION_FILES = /(^|[\\\\/])(package\\.json|[jt]sconfig(\\..*)?\\.json)$/;
+
+            // Plugins may load files which are not in the metafile inputs (e.g. Tailwind sources), so only plugin-less
+            // contexts skip the rebuild when none of the changed files is an input of the previous successful build
+            function canSkip(entry, changed) {
+                return plugins.length === 0 && entry.inputs != null && changed && changed.length > 0
+                    && changed.every((file) => !entry.inputs.has(file) && !RESOLUTION_FILES.test(file));
+            }
+
+            // The contents of in-memory output files are sent after the JSON of the response
+            function outputs(result) {
+                if (!result.outputFiles) {
+                    return {};
+                }
+                let offset = 0;
+                const outputFiles = result.outputFiles.map((file) => {
+                    const entry = { path: file.path, hash: file.hash, offset, length: file.contents.length };
+                    offset += file.contents.length;
+                    return entry;
+                });
+                const data = new Uint8Array(offset);
+                result.outputFiles.forEach((file, i) => data.set(file.contents, outputFiles[i].offset));
+                return { outputFiles, data };
+            }
+
+            async function rebuild(request) {
+                const entry = contexts.get(request.key);
+                if (!entry) {
+                    return { success: false, logs: [{ level: 'ERROR', message: `Unknown context: ${request.key}` }] };
+                }
+                entry.logs = [];
+                if (canSkip(entry, request.changed)) {
+                    log(entry, 'DEBUG', `Skipping the rebuild of context ${request.key}, no input changed`);
+                    return { success: true, skipped: true, logs: entry.logs };
+                }
+                console.log(`[DEBUG] Running EsBuild (${esbuild.version}) for context ${request.key}`);
+                try {
+                    if (entry.context == null) {
+                        const options = structuredClone(entry.options);
+                        options.metafile = true;
+                        entry.context = esbuild.context(applyPlugins(options, entry));
+                    }
+                    const context = await entry.context.catch((err) => {
+                        entry.context = null;
+                        throw err;
+                    });
+                    const result = await context.rebuild();
+                    const workDir = entry.options.absWorkingDir;
+                    entry.inputs = new Set(Object.keys(result.metafile.inputs).map((input) => path.resolve(workDir, input)));
+                    log(entry, 'DEBUG', 'Bundling completed successfully');
+                    return { success: true, logs: entry.logs, inputs: [...entry.inputs], ...outputs(result) };
+                } catch (err) {
+                    entry.inputs = null;
+                    if (!err.errors) {
+                        log(entry, 'ERROR', 'EsBuild Error: ' + err.message);
+                    }
+                    return { success: false, logs: entry.logs };
+                }
+            }
+
+            async function cancel(request) {
+                const entry = contexts.get(request.key);
+                if (entry && entry.context) {
+                    const context = await entry.context.catch(() => null);
+                    if (context) {
+                        await context.cancel();
+                    }
+                }
+                return { success: true, logs: [] };
+            }
+
+            async function dispose(request) {
+                const entry = contexts.get(request.key);
+                contexts.delete(request.key);
+                if (entry && entry.context) {
+                    const context = await entry.context.catch(() => null);
+                    if (context) {
+                        await context.dispose();
+                    }
+                }
+                return { success: true, logs: [] };
+            }
+
+            async function close(request) {
+                console.log('[DEBUG] Closing Esbuild Worker.');
+                for (const key of [...contexts.keys()]) {
+                    await dispose({ key });
+                }
+                esbuild.stop();
+                respond(request.id, { success: true, logs: [] }, () => process.exit(0));
+            }
+
+            const handlers = {
+              init,
+              build,
+              context,
+              rebuild,
+              cancel,
+              dispose,
+              ping: () => ({ success: true, logs: [] }),
+              close
+            };
+
+            const encoder = new TextEncoder();
+            const decoder = new TextDecoder();
+
+            // Responses are written as length prefixed frames on stdout (JSON length, JSON, data), logs go to stderr
+            function respond(id, result, callback) {
+              const { data, ...response } = result;
+              const json = encoder.encode(JSON.stringify({ id, ...response }));
+              const length = 4 + json.length + (data ? data.length : 0);
+              const frame = new Uint8Array(4 + length);
+              const view = new DataView(frame.buffer);
+              view.setUint32(0, length);
+              view.setUint32(4, json.length);
+              frame.set(json, 8);
+              if (data) {
+                frame.set(data, 8 + json.length);
+              }
+              process.stdout.write(frame, callback);
+            }
+
+            function dispatch(payload) {
+              let request;
+              try {
+                request = JSON.parse(decoder.decode(payload));
+              } catch (err) {
+                console.log(`[ERROR] Invalid request: ${cleanLog(err.message)}`);
+                return;
+              }
+              const handler = handlers[request.command];
+              if (!handler) {
+                respond(request.id, { success: false, logs: [{ level: 'ERROR', message: `Unknown command: "${request.command}"` }] });
+                return;
+              }
+              // Requests are not awaited, so that several builds can run concurrently
+              Promise.resolve()
+                .then(() => handler(request))
+                .catch((err) => ({ success: false, logs: [{ level: 'ERROR', message: `Handler for ${request.command} failed: ${err.stack}` }] }))
+                .then((result) => respond(request.id, result));
+            }
+
+            // Only node compatible APIs are used, so that the worker runs on Deno, Node and Bun
+            function listenForRequests() {
+              console.log("[DEBUG] Worker is listening for Java requests...");
+              let buffer = new Uint8Array(0);
+              process.stdin.on('data', (chunk) => {
+                // Requests are length prefixed frames, a chunk may contain a partial or several requests
+                const merged = new Uint8Array(buffer.length + chunk.length);
+                merged.set(buffer);
+                merged.set(chunk, buffer.length);
+                buffer = merged;
+                while (buffer.length >= 4) {
+                  const length = new DataView(buffer.buffer, buffer.byteOffset, 4).getUint32(0);
+                  if (buffer.length < 4 + length) break;
+                  dispatch(buffer.subarray(4, 4 + length));
+                  buffer = buffer.subarray(4 + length);
+                }
+              });
+              process.stdin.on('error', (err) => console.error("[ERROR] Error while reading stdin:", cleanLog(err.stack)));
+              process.stdin.on('end', () => {
+                console.log("[INFO] Listener stopped.");
+                process.exit(0);
+              });
+            }
+
+            listenForRequests();
+            """;
+
+    /**
+     * A worker response.
+     *
+     * @param json the JSON of the response
+     * @param frame the response frame
+     * @param dataOffset the offset of the output files contents in the frame
+     */
+    record Response(JsonNode json, byte[] frame, int dataOffset) {
+
+        /**
+         * @param dist the output directory of the build
+         * @return the output files of an in-memory build, copied in a direct buffer
+         */
+        OutputFiles outputFiles(Path dist) {
+            final JsonNode files = json.path("outputFiles");
+            if (files.isEmpty()) {
+                return OutputFiles.empty();
+            }
+            final OutputFiles.Builder builder = OutputFiles.builder(dist, frame.length - dataOffset);
+            for (JsonNode file : files) {
+                builder.add(file.path("path").asText(), file.path("hash").asText(), frame,
+                        dataOffset + file.path("offset").asInt(), file.path("length").asInt());
+            }
+            return builder.build();
+        }
+    }
+
+    /**
+     * @param workDir the directory the worker is started in
+     * @param bundleOptions the options used to prepare the worker script (plugins and node_modules)
+     */
+    public WorkerScript(Path workDir, BundleOptions bundleOptions) {
+        this.workDir = workDir;
+        this.bundleOptions = bundleOptions;
+        this.runtime = Runtimes.jsRuntime(bundleOptions);
+    }
+
+    public void init() {
+        await(start(), timeoutSeconds()).logAll();
+    }
+
+    /**
+     * Start the worker process without waiting for it to be ready.
+     *
+     * @return the result of the "init" request, completed when the worker is ready
+     */
+    public CompletableFuture<ScriptLog> start() {
+        if (process.get() != null) {
+            throw new IllegalStateException("WorkerScript has already been initialized");
+        }
+        try {
+            final long start = System.currentTimeMillis();
+            final Path pluginsModule = CommonScript.preparePluginsModule(bundleOptions.nodeModulesDir(), bundleOptions);
+            final Path runner = runnerScript(bundleOptions.nodeModulesDir());
+            final Process p = DenoRunner.startScript(runtime, workDir, bundleOptions.nodeModulesDir(), runner,
+                    bundleOptions.debugBuild());
+            if (!process.compareAndSet(null, p)) {
+                p.destroyForcibly();
+                throw new IllegalStateException("WorkerScript has already been initialized");
+            }
+            requests = new DataOutputStream(new BufferedOutputStream(p.getOutputStream()));
+            final ScriptLog processLog = new ScriptLog();
+            DenoRunner.pump(p.getErrorStream(), line -> onLog(processLog, line));
+            responses = DenoRunner.pumpFrames(p.getInputStream(), this::onResponse);
+            responses.whenComplete((r, e) -> {
+                final IOException closed = new IOException("WorkerScript process is closed");
+                pending.values().forEach(f -> f.completeExceptionally(closed));
+                pending.clear();
+            });
+            final Thread destroyHook = new Thread(p::destroyForcibly);
+            Runtime.getRuntime().addShutdownHook(destroyHook);
+            return request("init", request -> {
+                request.put("color", DenoRunner.supportsColor());
+                request.set("plugins", MAPPER.valueToTree(bundleOptions.plugins().stream().map(EsBuildPlugin::toMap).toList()));
+                if (pluginsModule != null) {
+                    request.put("pluginsModule", pluginsModule.toAbsolutePath().toString());
+                }
+            }).whenComplete((r, e) -> {
+                Runtime.getRuntime().removeShutdownHook(destroyHook);
+                LOG.debugf("EsBuild worker started on %s in %dms", runtime.name(), System.currentTimeMillis() - start);
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Write the worker script in node_modules if needed, its file name contains the hash of its content, so that it is
+     * written only once per version and never modified afterward.
+     *
+     * @param nodeModules the node_modules directory, the script resolves esbuild and the plugins from it
+     * @return the worker script
+     */
+    static Path runnerScript(Path nodeModules) throws IOException {
+        final byte[] content = SCRIPT.getBytes(StandardCharsets.UTF_8);
+        final Path dir = nodeModules.resolve(".esbuild-java");
+        final Path runner = dir.resolve("worker-%s.mjs".formatted(sha256(content).substring(0, 16)));
+        if (!Files.isRegularFile(runner)) {
+            Files.createDirectories(dir);
+            final Path tmp = Files.createTempFile(dir, "worker-", ".tmp");
+            Files.write(tmp, content);
+            try {
+                Files.move(tmp, runner, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // Another process may have written it concurrently
+                Files.deleteIfExists(tmp);
+                if (!Files.isRegularFile(runner)) {
+                    throw e;
+                }
+            }
+        }
+        return runner;
+    }
+
+    static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return true if a context with those options can be hosted by this worker (same runtime, plugins and node_modules)
+     */
+    public boolean supports(BundleOptions options) {
+        return Runtimes.jsRuntime(options).name().equals(runtime.name())
+                && Objects.equals(options.plugins(), bundleOptions.plugins())
+                && options.nodeModulesDir() != null
+                && options.nodeModulesDir().toAbsolutePath().normalize()
+                        .equals(bundleOptions.nodeModulesDir().toAbsolutePath().normalize());
+    }
+
+    /**
+     * Run a build with the given options on this worker and wait for it, the worker must have been initialized for the same
+     * plugins.
+     *
+     * @param options the options to build with
+     * @return the build logs
+     * @throws BundlingException when the build failed
+     * @throws IOException when the worker process is closed
+     */
+    public ScriptLog build(BundleOptions options) throws IOException {
+        return build(workDir, options);
+    }
+
+    /**
+     * Run a build in the given work directory on this worker and wait for it, the worker must have been initialized for the
+     * same plugins.
+     *
+     * @param buildWorkDir the work directory of the build
+     * @param options the options to build with
+     * @return the build logs
+     * @throws BundlingException when the build failed
+     * @throws IOException when the worker process is closed
+     */
+    public ScriptLog build(Path buildWorkDir, BundleOptions options) throws IOException {
+        checkAlive();
+        return await(buildAsync(buildWorkDir, options), options.timeoutSeconds());
+    }
+
+    /**
+     * Run a build with the given options on this worker.
+     *
+     * @param buildWorkDir the work directory of the build
+     * @param options the options to build with
+     * @return the build logs, completed exceptionally with a {@link BundlingException} when the build failed
+     */
+    public CompletableFuture<ScriptLog> buildAsync(Path buildWorkDir, BundleOptions options) {
+        return request("build", request -> {
+            request.put("workDir", buildWorkDir.toAbsolutePath().toString());
+            request.set("options", toJsonNode(options));
+        });
+    }
+
+    /**
+     * Register a new esbuild context hosted by this worker, it is created lazily on the first rebuild.
+     *
+     * @param key the context key
+     * @param contextWorkDir the work directory of the context
+     * @param options the options of the context
+     */
+    public CompletableFuture<ScriptLog> context(String key, Path contextWorkDir, BundleOptions options) {
+        return request("context", request -> {
+            request.put("key", key);
+            request.put("workDir", contextWorkDir.toAbsolutePath().toString());
+            request.set("options", toJsonNode(options));
+        });
+    }
+
+    public CompletableFuture<ScriptLog> rebuild(String key) {
+        return rebuild(key, Set.of());
+    }
+
+    /**
+     * Rebuild a context after the given files changed, the rebuild is skipped when the context has no plugins and none of
+     * those files is an input of its previous successful build.
+     *
+     * @param key the context key
+     * @param changed the changed files, the context is always rebuilt when empty
+     */
+    public CompletableFuture<ScriptLog> rebuild(String key, Set<Path> changed) {
+        return rebuildResponse(key, changed).thenApply(WorkerScript::toLog);
+    }
+
+    /**
+     * @return the rebuild response, with the "inputs" and the in-memory "outputFiles" of the build when it was not skipped
+     */
+    CompletableFuture<Response> rebuildResponse(String key, Set<Path> changed) {
+        return send("rebuild", request -> {
+            request.put("key", key);
+            final ArrayNode files = request.putArray("changed");
+            changed.forEach(file -> files.add(file.toAbsolutePath().normalize().toString()));
+        });
+    }
+
+    /**
+     * Cancel the running build of a context, if any, the worker and the context stay alive.
+     */
+    public CompletableFuture<ScriptLog> cancel(String key) {
+        return request("cancel", request -> request.put("key", key));
+    }
+
+    public CompletableFuture<ScriptLog> dispose(String key) {
+        return request("dispose", request -> request.put("key", key));
+    }
+
+    /**
+     * @return a new unique key to register a context on this worker
+     */
+    public String newContextKey() {
+        return "context-" + contextKeys.incrementAndGet();
+    }
+
+    /**
+     * Check that the worker is still alive and responding.
+     *
+     * @param timeoutSeconds how long to wait for the answer
+     * @return true if the worker answered in time
+     */
+    public boolean ping(long timeoutSeconds) {
+        if (!isAlive()) {
+            return false;
+        }
+        try {
+            await(request("ping", null), timeoutSeconds);
+            return isAlive();
+        } catch (RuntimeException e) {
+            LOG.debugf("Worker in ''%s'' did not answer the health check: %s", workDir, e.getMessage());
+            destroy();
+            return false;
+        }
+    }
+
+    private CompletableFuture<ScriptLog> request(String command, Consumer<ObjectNode> payload) {
+        return send(command, payload).thenApply(WorkerScript::toLog);
+    }
+
+    private CompletableFuture<Response> send(String command, Consumer<ObjectNode> payload) {
+        final long id = ids.incrementAndGet();
+        final CompletableFuture<Response> future = new CompletableFuture<>();
+        final Process p = process.get();
+        if (p == null || !p.isAlive()) {
+            future.completeExceptionally(new IOException("WorkerScript process is closed"));
+            return future;
+        }
+        final ObjectNode request = MAPPER.createObjectNode();
+        request.put("id", id);
+        request.put("command", command);
+        if (payload != null) {
+            payload.accept(request);
+        }
+        pending.put(id, future);
+        if (responses.isDone()) {
+            // the output may have been closed after the process check, once the pending requests were failed
+            pending.remove(id);
+            future.completeExceptionally(new IOException("WorkerScript process is closed"));
+            return future;
+        }
+        try {
+            final byte[] frame = MAPPER.writeValueAsBytes(request);
+            synchronized (requests) {
+                requests.writeInt(frame.length);
+                requests.write(frame);
+                requests.flush();
+            }
+        } catch (IOException e) {
+            pending.remove(id);
+            future.completeExceptionally(e);
+        }
+        if (USES.contains(command)) {
+            // The health checks don't count as uses, the idle workers are evicted
+            future.whenComplete((r, e) -> lastUsed = System.currentTimeMillis());
+        }
+        return future;
+    }
+
+    private static void onLog(ScriptLog processLog, String line) {
+        processLog.add(line);
+        processLog.logAll();
+        processLog.clear();
+    }
+
+    private void onResponse(byte[] frame) {
+        try {
+            final int jsonLength = frame.length < 4 ? -1 : ByteBuffer.wrap(frame).getInt();
+            if (jsonLength < 0 || jsonLength > frame.length - 4) {
+                throw new IOException("invalid frame of " + frame.length + " bytes");
+            }
+            final JsonNode response = MAPPER.readTree(frame, 4, jsonLength);
+            final CompletableFuture<Response> future = pending.remove(response.path("id").asLong());
+            if (future == null) {
+                return;
+            }
+            if (response.path("success").asBoolean()) {
+                future.complete(new Response(response, frame, 4 + jsonLength));
+            } else {
+                final ScriptLog log = toLog(response);
+                log.logAll();
+                future.completeExceptionally(new BundlingException("EsBuild Bundling failed", log));
+            }
+        } catch (IOException e) {
+            LOG.warnf("Invalid response from worker: %s", e.getMessage());
+        }
+    }
+
+    static ScriptLog toLog(Response response) {
+        return toLog(response.json());
+    }
+
+    static ScriptLog toLog(JsonNode response) {
+        final ScriptLog log = new ScriptLog();
+        for (JsonNode message : response.path("logs")) {
+            log.add(toLevel(message.path("level").asText()), message.path("message").asText());
+        }
+        return log;
+    }
+
+    private static Logger.Level toLevel(String level) {
+        try {
+            return Logger.Level.valueOf(level.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Logger.Level.INFO;
+        }
+    }
+
+    private static JsonNode toJsonNode(BundleOptions options) {
+        try {
+            final JsonNode json = MAPPER.readTree(options.esBuildConfig().toJson());
+            if (options.inMemoryOutput() && json instanceof ObjectNode node) {
+                node.put("write", false);
+            }
+            return json;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Wait for the result of a request.
+     *
+     * @param future the request future
+     * @param timeoutSeconds the timeout, no timeout if lower or equal to 0
+     * @return the result of the request
+     * @throws BundlingException when the build failed or timed out
+     */
+    static <T> T await(CompletableFuture<T> future, long timeoutSeconds) {
+        try {
+            return timeoutSeconds > 0 ? future.get(timeoutSeconds, TimeUnit.SECONDS) : future.get();
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new BundlingException("Bundling timed out after " + timeoutSeconds + " seconds");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Bundling process was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BundlingException bundlingException) {
+                throw bundlingException;
+            }
+            throw new RuntimeException("Bundling process exited unexpectedly", e.getCause());
+        }
+    }
+
+    private long timeoutSeconds() {
+        return bundleOptions.debugBuild() ? -1 : bundleOptions.timeoutSeconds();
+    }
+
+    private void checkAlive() throws IOException {
+        if (process.get() == null) {
+            throw new IllegalStateException("WorkerScript has not been initialized");
+        }
+        if (!isAlive()) {
+            throw new IOException("WorkerScript process is closed");
+        }
+    }
+
+    public Path workDir() {
+        return workDir;
+    }
+
+    /**
+     * @return the time of the last build, context or rebuild request, the health checks are not counted
+     */
+    public long lastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * @return the number of requests waiting for a response
+     */
+    public int pendingRequests() {
+        return pending.size();
+    }
+
+    public Optional<ProcessHandle> processHandle() {
+        return Optional.ofNullable(process.get()).map(Process::toHandle);
+    }
+
+    public boolean isAlive() {
+        final Process p = process.get();
+        return p != null && p.isAlive();
+    }
+
+    private void destroy() {
+        final Process p = process.getAndSet(null);
+        if (p != null) {
+            p.destroyForcibly();
+        }
+    }
+
+    @Override
+    public void close() {
+        final Process p = process.get();
+        if (p == null || !p.isAlive()) {
+            process.set(null);
+            return;
+        }
+        try {
+            await(request("close", null), 3);
+            if (!p.waitFor(3, TimeUnit.SECONDS)) {
+                p.destroyForcibly();
+            }
+        } catch (RuntimeException e) {
+            LOG.debugf("Worker in ''%s'' did not close gracefully: %s", workDir, e.getMessage());
+            p.destroyForcibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            p.destroyForcibly();
+        } finally {
+            process.set(null);
+        }
+    }
+}
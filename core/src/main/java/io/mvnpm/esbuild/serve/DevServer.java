@@ -0,0 +1,461 @@
+package io.mvnpm.esbuild.serve;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.jboss.logging.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.mvnpm.esbuild.model.OutputFiles;
+import io.mvnpm.esbuild.model.WatchBuildResult;
+import io.mvnpm.esbuild.script.DevProcess;
+import io.mvnpm.esbuild.util.PathUtils;
+import io.mvnpm.esbuild.watch.DevWatcher;
+
+/**
+ * A lightweight HTTP server for dev mode, serving the output of a {@link DevProcess}.
+ * <p>
+ * The output files are served from memory for in-memory builds (see
+ * {@link io.mvnpm.esbuild.model.BundleOptionsBuilder#withInMemoryOutput(boolean)}), from the output directory otherwise.
+ * The other files are served from the optional serve directory (e.g. for index.html). All the responses carry an ETag, so
+ * that unchanged files are revalidated with a 304.
+ * <p>
+ * A "change" Server-Sent-Event is pushed on {@value #EVENTS_PATH} after each successful build which changed the output,
+ * like the esbuild serve mode, with the added, removed and updated output files (compared with their hash for in-memory
+ * builds, their size and modification time otherwise). The served HTML pages get a small client (see {@link HmrClient})
+ * which swaps the updated stylesheets, re-imports the updated ESM chunks and reloads the page for the other changes.
+ */
+public class DevServer implements Consumer<WatchBuildResult>, Closeable {
+    public static final String EVENTS_PATH = "/esbuild";
+    private static final Logger LOG = Logger.getLogger(DevServer.class);
+    private static final AtomicInteger SERVER_COUNTER = new AtomicInteger();
+    private static final Map<String, String> CONTENT_TYPES = Map.ofEntries(
+            Map.entry("js", "text/javascript; charset=utf-8"),
+            Map.entry("mjs", "text/javascript; charset=utf-8"),
+            Map.entry("css", "text/css; charset=utf-8"),
+            Map.entry("html", "text/html; charset=utf-8"),
+            Map.entry("json", "application/json"),
+            Map.entry("map", "application/json"),
+            Map.entry("svg", "image/svg+xml"),
+            Map.entry("png", "image/png"),
+            Map.entry("jpg", "image/jpeg"),
+            Map.entry("jpeg", "image/jpeg"),
+            Map.entry("gif", "image/gif"),
+            Map.entry("webp", "image/webp"),
+            Map.entry("ico", "image/x-icon"),
+            Map.entry("woff", "font/woff"),
+            Map.entry("woff2", "font/woff2"),
+            Map.entry("ttf", "font/ttf"),
+            Map.entry("txt", "text/plain; charset=utf-8"));
+
+    private final DevProcess process;
+    private final DevWatcher watcher;
+    private final Path serveDir;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final List<OutputStream> clients = new CopyOnWriteArrayList<>();
+    private Map<String, String> outputs = Map.of();
+    private volatile boolean closed;
+
+    /**
+     * Serve the output of a process, the changes are pushed with {@link #publishChange()} or {@link #reload()}.
+     *
+     * @param process the dev process to serve
+     * @param serveDir the directory serving the files which are not output files, or null
+     * @param address the address to bind, with port 0 to pick a free port
+     */
+    public DevServer(DevProcess process, Path serveDir, InetSocketAddress address) throws IOException {
+        this(process, null, serveDir, address);
+    }
+
+    /**
+     * Serve the output of a watched process, the changes are pushed after each successful rebuild of the watcher. Closing
+     * the server closes the watcher.
+     *
+     * @param watcher the watcher rebuilding the process, it should not be started yet to publish the first build
+     * @param serveDir the directory serving the files which are not output files, or null
+     * @param address the address to bind, with port 0 to pick a free port
+     */
+    public DevServer(DevWatcher watcher, Path serveDir, InetSocketAddress address) throws IOException {
+        this(watcher.process(), watcher, serveDir, address);
+        watcher.addListener(this);
+    }
+
+    private DevServer(DevProcess process, DevWatcher watcher, Path serveDir, InetSocketAddress address)
+            throws IOException {
+        this.process = process;
+        this.watcher = watcher;
+        this.serveDir = serveDir == null ? null : serveDir.toAbsolutePath().normalize();
+        this.server = HttpServer.create(address, 0);
+        final int id = SERVER_COUNTER.incrementAndGet();
+        final AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "DevServer-" + id + "-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext(EVENTS_PATH, this::handleEvents);
+        server.createContext("/", this::handleFile);
+    }
+
+    public DevServer start() {
+        synchronized (this) {
+            outputs = fingerprints();
+        }
+        server.start();
+        LOG.infof("Dev server started on %s", uri());
+        return this;
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public URI uri() {
+        final InetSocketAddress address = server.getAddress();
+        final String host = address.getAddress().isAnyLocalAddress() ? "localhost" : address.getHostString();
+        return URI.create("http://%s:%d/".formatted(host, address.getPort()));
+    }
+
+    /**
+     * Push the changed output files after a successful build.
+     */
+    @Override
+    public void accept(WatchBuildResult result) {
+        if (result.isSuccess()) {
+            publishChange();
+        }
+    }
+
+    /**
+     * Compare the output files with the previous ones and push a "change" event to the connected pages when they differ.
+     *
+     * @return the changed files
+     */
+    public OutputChange publishChange() {
+        final OutputChange change;
+        synchronized (this) {
+            final Map<String, String> current = fingerprints();
+            change = OutputChange.between(outputs, current);
+            outputs = current;
+        }
+        if (!change.isEmpty()) {
+            LOG.debugf("Output changed: %s", change);
+            send("change", change.toJson());
+        }
+        return change;
+    }
+
+    /**
+     * Push a "change" event without files, the pages reload.
+     */
+    public void reload() {
+        send("change", new OutputChange(List.of(), List.of(), List.of()).toJson());
+    }
+
+    private Map<String, String> fingerprints() {
+        final OutputFiles outputFiles = process.outputFiles();
+        final Map<String, String> fingerprints = new HashMap<>();
+        if (!outputFiles.isEmpty()) {
+            outputFiles.files().forEach(file -> fingerprints.put(file.path(), file.hash()));
+            return fingerprints;
+        }
+        final Path dist = process.dist();
+        if (!Files.isDirectory(dist)) {
+            return fingerprints;
+        }
+        try {
+            Files.walkFileTree(dist, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    fingerprints.put(PathUtils.toUnixPath(dist.relativize(file).toString()),
+                            fingerprint(attrs));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            LOG.debugf("Could not scan ''%s'': %s", dist, e.getMessage());
+        }
+        return fingerprints;
+    }
+
+    private static String fingerprint(BasicFileAttributes attributes) {
+        return "%x-%x".formatted(attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+
+    /**
+     * @return the number of pages listening for reloads
+     */
+    public int clients() {
+        return clients.size();
+    }
+
+    private void send(String event, String data) {
+        final byte[] message = "event: %s\ndata: %s\n\n".formatted(event, data).getBytes(StandardCharsets.UTF_8);
+        for (OutputStream client : clients) {
+            try {
+                synchronized (client) {
+                    client.write(message);
+                    client.flush();
+                }
+            } catch (IOException e) {
+                // the page is gone
+                clients.remove(client);
+                closeQuietly(client);
+            }
+        }
+    }
+
+    private void handleEvents(HttpExchange exchange) throws IOException {
+        // The contexts match by prefix
+        if (!EVENTS_PATH.equals(exchange.getRequestURI().getPath())) {
+            handleFile(exchange);
+            return;
+        }
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            sendError(exchange, 405, "Method Not Allowed");
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        exchange.sendResponseHeaders(200, 0);
+        final OutputStream body = exchange.getResponseBody();
+        body.write("retry: 500\n\n".getBytes(StandardCharsets.UTF_8));
+        body.flush();
+        // The exchange stays open until the page is gone or the server is closed
+        clients.add(body);
+        if (closed) {
+            clients.remove(body);
+            closeQuietly(body);
+        }
+    }
+
+    private void handleFile(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            final String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                sendError(exchange, 405, "Method Not Allowed");
+                return;
+            }
+            if (HmrClient.PATH.equals(exchange.getRequestURI().getPath())) {
+                sendClient(exchange);
+                return;
+            }
+            final String path = toRelativePath(exchange.getRequestURI().getPath());
+            if (path == null) {
+                sendError(exchange, 404, "Not Found");
+                return;
+            }
+            final OutputFiles outputFiles = process.outputFiles();
+            final Optional<OutputFiles.OutputFile> outputFile = outputFiles.get(path);
+            if (outputFile.isPresent()) {
+                sendBuffer(exchange, path, outputFile.get());
+                return;
+            }
+            if (outputFiles.isEmpty() && sendFile(exchange, path, process.dist())) {
+                return;
+            }
+            if (serveDir != null && sendFile(exchange, path, serveDir)) {
+                return;
+            }
+            sendError(exchange, 404, "Not Found");
+        }
+    }
+
+    /**
+     * @return the path relative to the served directories, null if it is outside of them
+     */
+    static String toRelativePath(String requestPath) {
+        String path = requestPath == null ? "" : requestPath;
+        while (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        if (path.isEmpty() || path.endsWith("/")) {
+            path += "index.html";
+        }
+        for (String segment : path.split("/")) {
+            if (segment.equals("..") || segment.contains("\\") || segment.contains(":")) {
+                return null;
+            }
+        }
+        return path;
+    }
+
+    private static void sendClient(HttpExchange exchange) throws IOException {
+        final byte[] body = HmrClient.SCRIPT.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType(HmrClient.PATH));
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        sendBytes(exchange, body);
+    }
+
+    private static boolean isHtml(String path) {
+        return path.endsWith(".html") || path.endsWith(".htm");
+    }
+
+    /**
+     * Send an HTML page with the HMR client.
+     */
+    private static void sendHtml(HttpExchange exchange, byte[] html) throws IOException {
+        sendBytes(exchange, HmrClient.inject(new String(html, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void sendBytes(HttpExchange exchange, byte[] body) throws IOException {
+        final boolean head = "HEAD".equals(exchange.getRequestMethod());
+        exchange.sendResponseHeaders(200, head || body.length == 0 ? -1 : body.length);
+        if (!head) {
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    private void sendBuffer(HttpExchange exchange, String path, OutputFiles.OutputFile file) throws IOException {
+        final String etag = "\"" + file.hash() + "\"";
+        if (notModified(exchange, path, etag)) {
+            return;
+        }
+        if (isHtml(path)) {
+            sendHtml(exchange, file.bytes());
+            return;
+        }
+        final boolean head = "HEAD".equals(exchange.getRequestMethod());
+        exchange.sendResponseHeaders(200, head ? -1 : file.size() == 0 ? -1 : file.size());
+        if (!head && file.size() > 0) {
+            final WritableByteChannel body = Channels.newChannel(exchange.getResponseBody());
+            final ByteBuffer buffer = file.buffer();
+            while (buffer.hasRemaining()) {
+                body.write(buffer);
+            }
+        }
+    }
+
+    private boolean sendFile(HttpExchange exchange, String path, Path dir) throws IOException {
+        final Path root = dir.toAbsolutePath().normalize();
+        Path file = root.resolve(path).normalize();
+        if (!file.startsWith(root)) {
+            return false;
+        }
+        if (Files.isDirectory(file)) {
+            file = file.resolve("index.html");
+        }
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return false;
+        }
+        if (!attributes.isRegularFile()) {
+            return false;
+        }
+        final long size = attributes.size();
+        final String etag = "\"" + fingerprint(attributes) + "\"";
+        if (notModified(exchange, file.getFileName().toString(), etag)) {
+            return true;
+        }
+        if (isHtml(file.getFileName().toString())) {
+            sendHtml(exchange, Files.readAllBytes(file));
+            return true;
+        }
+        final boolean head = "HEAD".equals(exchange.getRequestMethod());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            exchange.sendResponseHeaders(200, head || size == 0 ? -1 : size);
+            if (!head) {
+                final WritableByteChannel body = Channels.newChannel(exchange.getResponseBody());
+                long position = 0;
+                while (position < size) {
+                    final long transferred = channel.transferTo(position, size - position, body);
+                    if (transferred <= 0) {
+                        break;
+                    }
+                    position += transferred;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean notModified(HttpExchange exchange, String path, String etag) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType(path));
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.getResponseHeaders().set("ETag", etag);
+        final String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null && (ifNoneMatch.equals("*") || List.of(ifNoneMatch.split("\\s*,\\s*")).contains(etag))) {
+            exchange.sendResponseHeaders(304, -1);
+            return true;
+        }
+        return false;
+    }
+
+    static String contentType(String path) {
+        final int dot = path.lastIndexOf('.');
+        final String extension = dot < 0 ? "" : path.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return CONTENT_TYPES.getOrDefault(extension, "application/octet-stream");
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        final byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static void closeQuietly(OutputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        for (OutputStream client : clients) {
+            closeQuietly(client);
+        }
+        clients.clear();
+        server.stop(0);
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (watcher != null) {
+            watcher.removeListener(this);
+            watcher.close();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package io.mvnpm.esbuild.serve;
+
+import java.util.Locale;
+
+/**
+ * The hot module replacement client injected in the HTML pages served by the {@link DevServer}.
+ * <p>
+ * It listens to the "change" events: updated stylesheets are swapped in place and updated ESM chunks loaded by the page are
+ * re-imported (an "esbuild:update" event is dispatched on window with the new module), the page reloads for any other
+ * change. An event without any file requests a reload.
+ */
+final class HmrClient {
+
+    static final String PATH = "/esbuild-hmr.js";
+
+    static final String TAG = "<script type=\"module\" src=\"" + PATH + "\"></script>";
+
+    // language=JavaScript
+    static final String SCRIPT = """
+            const modules = new Map();
+
+            function pathname(url) {
+              return new URL(url, location.href).pathname;
+            }
+
+            function swapStylesheet(path) {
+              let swapped = false;
+              for (const link of document.querySelectorAll('link[rel="stylesheet"]')) {
+                if (pathname(link.href) !== path) continue;
+                const next = link.cloneNode();
+                next.href = `${path}?t=${Date.now()}`;
+                // The old stylesheet is removed once the new one is applied, to avoid a flash of unstyled content
+                next.addEventListener('load', () => link.remove(), { once: true });
+                next.addEventListener('error', () => next.remove(), { once: true });
+                link.after(next);
+                swapped = true;
+              }
+              return swapped;
+            }
+
+            function isModule(path) {
+              return modules.has(path) || [...document.querySelectorAll('script[type="module"][src]')]
+                .some((script) => pathname(script.src) === path);
+            }
+
+            async function reimport(path) {
+              const module = await import(`${path}?t=${Date.now()}`);
+              modules.set(path, module);
+              window.dispatchEvent(new CustomEvent('esbuild:update', { detail: { path, module } }));
+            }
+
+            new EventSource('/esbuild').addEventListener('change', async (event) => {
+              const { added, removed, updated } = JSON.parse(event.data);
+              const assets = (paths) => paths.filter((path) => !path.endsWith('.map'));
+              if (added.length === 0 && removed.length === 0 && updated.length === 0) {
+                location.reload();
+                return;
+              }
+              const css = assets(updated).filter((path) => path.endsWith('.css'));
+              const js = assets(updated).filter((path) => /\\.m?js$/.test(path));
+              if (assets(removed).length > 0 || css.length + js.length < assets(updated).length
+                  || !css.every(swapStylesheet) || !js.every(isModule)) {
+                location.reload();
+                return;
+              }
+              try {
+                for (const path of js) {
+                  await reimport(path);
+                }
+                if (css.length + js.length > 0) {
+                  console.debug('[esbuild] Hot updated', [...css, ...js]);
+                }
+              } catch (err) {
+                console.error('[esbuild] Hot update failed, reloading', err);
+                location.reload();
+              }
+            });
+            """;
+
+    private HmrClient() {
+    }
+
+    /**
+     * Add the client script tag to an HTML page, in its head when there is one.
+     */
+    static String inject(String html) {
+        final String lower = html.toLowerCase(Locale.ROOT);
+        for (String tag : new String[] { "</head>", "</body>" }) {
+            final int index = lower.indexOf(tag);
+            if (index >= 0) {
+                return html.substring(0, index) + TAG + html.substring(index);
+            }
+        }
+        return html + TAG;
+    }
+}
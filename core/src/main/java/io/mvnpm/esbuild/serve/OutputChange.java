@@ -0,0 +1,61 @@
+package io.mvnpm.esbuild.serve;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * The output files changed by a build, as URL paths, sent to the pages with the esbuild "change" event format.
+ */
+public record OutputChange(List<String> added, List<String> removed, List<String> updated) {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * @param previous the fingerprints of the previous output files by path
+     * @param current the fingerprints of the current output files by path
+     * @return the changed files
+     */
+    public static OutputChange between(Map<String, String> previous, Map<String, String> current) {
+        final List<String> added = new ArrayList<>();
+        final List<String> removed = new ArrayList<>();
+        final List<String> updated = new ArrayList<>();
+        current.forEach((path, fingerprint) -> {
+            if (!previous.containsKey(path)) {
+                added.add("/" + path);
+            } else if (!Objects.equals(previous.get(path), fingerprint)) {
+                updated.add("/" + path);
+            }
+        });
+        for (String path : previous.keySet()) {
+            if (!current.containsKey(path)) {
+                removed.add("/" + path);
+            }
+        }
+        Collections.sort(added);
+        Collections.sort(removed);
+        Collections.sort(updated);
+        return new OutputChange(List.copyOf(added), List.copyOf(removed), List.copyOf(updated));
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && updated.isEmpty();
+    }
+
+    public String toJson() {
+        final ObjectNode json = MAPPER.createObjectNode();
+        added.forEach(json.putArray("added")::add);
+        removed.forEach(json.putArray("removed")::add);
+        updated.forEach(json.putArray("updated")::add);
+        try {
+            return MAPPER.writeValueAsString(json);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,479 @@
+package io.mvnpm.esbuild.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.logging.Logger;
+
+import io.mvnpm.esbuild.BundlingException;
+import io.mvnpm.esbuild.binary.EsBuildRunner;
+import io.mvnpm.esbuild.deno.DenoRunner;
+import io.mvnpm.esbuild.deno.ScriptLog;
+import io.mvnpm.esbuild.model.BundleOptions;
+import io.mvnpm.esbuild.model.EsBuildConfig;
+
+/**
+ * A long-lived native esbuild process driven through its binary service protocol (the one used by the esbuild JS API),
+ * builds, contexts and transforms are requested directly from Java without any JS runtime.
+ * <p>
+ * Requests are multiplexed over the process stdin/stdout, so one service can run many concurrent builds and contexts.
+ * The service exits by itself when its stdin is closed, which happens at the latest when the JVM exits.
+ */
+public class EsBuildService implements Closeable {
+    private static final Logger LOG = Logger.getLogger(EsBuildService.class);
+    private static final Map<Path, CompletableFuture<EsBuildService>> SERVICES = new ConcurrentHashMap<>();
+    private static final AtomicInteger READER_COUNTER = new AtomicInteger();
+    private static final int MAX_PACKET_LENGTH = 256 * 1024 * 1024;
+
+    public record OutputFile(String path, byte[] contents, String hash) {
+    }
+
+    /**
+     * @param log the formatted errors and warnings
+     * @param outputFiles the output files, only when the build does not write them
+     * @param metafile the metafile json, only when the metafile is enabled
+     */
+    public record BuildResult(ScriptLog log, List<OutputFile> outputFiles, String metafile) {
+    }
+
+    public record TransformResult(String code, String map, ScriptLog log) {
+    }
+
+    private final Path nodeModules;
+    private final Map<Integer, CompletableFuture<Map<String, Object>>> pending = new ConcurrentHashMap<>();
+    private final Map<Integer, ServiceContext> contexts = new ConcurrentHashMap<>();
+    private final AtomicInteger ids = new AtomicInteger();
+    private final AtomicInteger keys = new AtomicInteger();
+    private final CompletableFuture<String> ready = new CompletableFuture<>();
+    private final CompletableFuture<EsBuildService> started = new CompletableFuture<>();
+    private volatile Process process;
+    private OutputStream requests;
+    private String version;
+
+    public EsBuildService(Path nodeModules) {
+        this.nodeModules = nodeModules.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Get the shared service for this node_modules directory, it is started (or restarted) when needed.
+     * <p>
+     * The service is started outside the map, the concurrent callers wait for the same start and get its failure.
+     */
+    public static EsBuildService get(Path nodeModules) {
+        final Path key = nodeModules.toAbsolutePath().normalize();
+        while (true) {
+            final CompletableFuture<EsBuildService> shared = SERVICES.get(key);
+            if (shared == null) {
+                final EsBuildService service = new EsBuildService(key);
+                if (SERVICES.putIfAbsent(key, service.started) == null) {
+                    service.start();
+                    return service;
+                }
+                continue;
+            }
+            final EsBuildService service;
+            try {
+                service = shared.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+            if (service.isAlive()) {
+                return service;
+            }
+            SERVICES.remove(key, shared);
+        }
+    }
+
+    public synchronized void start() {
+        if (process != null) {
+            throw new IllegalStateException("EsBuildService has already been started");
+        }
+        try {
+            final Path esBuildBinary = EsBuildRunner.getEsBuildBinary(nodeModules);
+            version = EsBuildRunner.getEsBuildVersion(nodeModules);
+            final ProcessBuilder pb = new ProcessBuilder(esBuildBinary.toAbsolutePath().toString(),
+                    "--service=" + version, "--ping");
+            pb.directory(nodeModules.toFile());
+            LOG.debugf("Starting EsBuild service (%s) from ''%s''", version, nodeModules);
+            final Process p = pb.start();
+            requests = new BufferedOutputStream(p.getOutputStream());
+            process = p;
+            DenoRunner.pump(p.getErrorStream(), line -> LOG.warnf("[esbuild] %s", line));
+            final Thread reader = new Thread(() -> read(p), "EsBuildService-Reader-" + READER_COUNTER.incrementAndGet());
+            reader.setDaemon(true);
+            reader.start();
+            final String binaryVersion = ready.get(10, TimeUnit.SECONDS);
+            if (!version.equals(binaryVersion)) {
+                throw new BundlingException(
+                        "EsBuild binary version '%s' does not match the expected version '%s'".formatted(binaryVersion,
+                                version));
+            }
+            started.complete(this);
+        } catch (IOException e) {
+            throw failStart(new RuntimeException(e));
+        } catch (TimeoutException | ExecutionException e) {
+            throw failStart(new BundlingException("EsBuild service failed to start: " + e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw failStart(new RuntimeException("EsBuild service start was interrupted", e));
+        } catch (RuntimeException e) {
+            throw failStart(e);
+        }
+    }
+
+    /**
+     * Close the process of a failed start and fail the callers waiting for it.
+     */
+    private RuntimeException failStart(RuntimeException e) {
+        if (!started.isDone()) {
+            close();
+            started.completeExceptionally(e);
+        }
+        return e;
+    }
+
+    private void read(Process p) {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(p.getInputStream()))) {
+            while (true) {
+                final int length;
+                try {
+                    length = Integer.reverseBytes(input.readInt());
+                } catch (EOFException e) {
+                    return;
+                }
+                if (length < 0 || length > MAX_PACKET_LENGTH) {
+                    throw new IOException("Invalid esbuild packet length: " + length);
+                }
+                final byte[] body = new byte[length];
+                input.readFully(body);
+                if (!ready.isDone()) {
+                    // The first packet is the version of the binary
+                    ready.complete(new String(body, StandardCharsets.UTF_8));
+                    continue;
+                }
+                onPacket(ServiceProtocol.decode(body));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.warnf("EsBuild service output could not be read: %s", e.getMessage());
+            p.destroyForcibly();
+        } finally {
+            final IOException closed = new IOException("EsBuild service is closed");
+            ready.completeExceptionally(closed);
+            pending.values().forEach(f -> f.completeExceptionally(closed));
+            pending.clear();
+            contexts.values().forEach(c -> c.onEnd(null));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void onPacket(ServiceProtocol.Packet packet) {
+        final Map<String, Object> value = packet.value() instanceof Map ? (Map<String, Object>) packet.value() : Map.of();
+        if (!packet.isRequest()) {
+            final CompletableFuture<Map<String, Object>> future = pending.remove(packet.id());
+            if (future != null) {
+                complete(future, value);
+            }
+            return;
+        }
+        final Object command = value.get("command");
+        if ("on-end".equals(command)) {
+            final ServiceContext context = contexts.get(value.get("key"));
+            if (context != null) {
+                context.onEnd(value);
+            }
+            send(packet.id(), false, Map.of("errors", List.of(), "warnings", List.of()));
+        } else {
+            // "ping" and any callback we did not register
+            send(packet.id(), false, Map.of());
+        }
+    }
+
+    /**
+     * Complete a request with its response, exceptionally when the request itself failed (e.g. the rebuild of a disposed
+     * context or an invalid option) like esbuild's own client does.
+     */
+    static void complete(CompletableFuture<Map<String, Object>> future, Map<String, Object> response) {
+        if (response.get("error") instanceof String error && !error.isEmpty()) {
+            LOG.debugf("EsBuild service request failed: %s", error);
+            future.completeExceptionally(new BundlingException("EsBuild service request failed: " + error));
+            return;
+        }
+        future.complete(response);
+    }
+
+    private void send(int id, boolean isRequest, Map<String, Object> value) {
+        final byte[] packet = ServiceProtocol.encode(new ServiceProtocol.Packet(id, isRequest, value));
+        try {
+            synchronized (requests) {
+                requests.write(packet);
+                requests.flush();
+            }
+        } catch (IOException e) {
+            final CompletableFuture<Map<String, Object>> future = pending.remove(id);
+            if (future != null) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    CompletableFuture<Map<String, Object>> request(Map<String, Object> request) {
+        final int id = ids.incrementAndGet();
+        final CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        if (!isAlive()) {
+            future.completeExceptionally(new IOException("EsBuild service is closed"));
+            return future;
+        }
+        pending.put(id, future);
+        send(id, true, request);
+        return future;
+    }
+
+    /**
+     * Run a build with the given options.
+     *
+     * @param workDir the work directory of the build
+     * @param options the prepared bundle options
+     * @param write true to write the output files, false to get them in the result
+     * @return the build result, completed exceptionally with a {@link BundlingException} when the build failed
+     */
+    public CompletableFuture<BuildResult> build(Path workDir, BundleOptions options, boolean write) {
+        return request(buildRequest(nextKey(), workDir, options.esBuildConfig(), write, false))
+                .thenCompose(this::toBuildResult);
+    }
+
+    /**
+     * Run a build which writes its output files and wait for it.
+     *
+     * @return the build logs
+     * @throws BundlingException when the build failed
+     */
+    public ScriptLog build(Path workDir, BundleOptions options) {
+        return await(build(workDir, options, true), options.timeoutSeconds()).log();
+    }
+
+    /**
+     * Create a context for incremental builds, the esbuild context is created lazily on the first build.
+     */
+    public ServiceContext context(Path workDir, BundleOptions options) {
+        return new ServiceContext(this, nextKey(), workDir, options);
+    }
+
+    /**
+     * Transform a single file content.
+     *
+     * @param input the content to transform
+     * @param flags the esbuild transform flags (ex: --loader=ts)
+     */
+    public CompletableFuture<TransformResult> transform(String input, List<String> flags) {
+        final Map<String, Object> request = new LinkedHashMap<>();
+        request.put("command", "transform");
+        request.put("flags", flags);
+        request.put("input", input.getBytes(StandardCharsets.UTF_8));
+        request.put("inputFS", false);
+        return request(request).thenCompose(response -> toLog(response).thenApply(log -> {
+            failOnErrors(response, log);
+            return new TransformResult(asString(response.get("code")), asString(response.get("map")), log);
+        }));
+    }
+
+    /**
+     * Format esbuild messages (as received in the results) the same way the esbuild CLI does.
+     */
+    public CompletableFuture<List<String>> formatMessages(List<?> messages, boolean isWarning) {
+        final Map<String, Object> request = new LinkedHashMap<>();
+        request.put("command", "format-msgs");
+        request.put("messages", messages);
+        request.put("isWarning", isWarning);
+        request.put("color", false);
+        request.put("terminalWidth", 100);
+        return request(request).thenApply(response -> {
+            final List<String> formatted = new ArrayList<>();
+            if (response.get("messages") instanceof List<?> list) {
+                list.forEach(m -> formatted.add(String.valueOf(m)));
+            }
+            return formatted;
+        });
+    }
+
+    Map<String, Object> buildRequest(int key, Path workDir, EsBuildConfig config, boolean write, boolean context) {
+        final List<List<String>> entries = new ArrayList<>();
+        if (config.entryPoints() != null) {
+            for (String entryPoint : config.entryPoints()) {
+                entries.add(List.of("", entryPoint));
+            }
+        }
+        final List<String> flags = new ArrayList<>(List.of(config.edit().entryPoint(null).build().toParams()));
+        flags.add("--log-level=silent");
+        if (context) {
+            // The inputs of a context build are used to skip its next rebuild
+            flags.add("--metafile");
+        }
+        final Map<String, Object> request = new LinkedHashMap<>();
+        request.put("command", "build");
+        request.put("key", key);
+        request.put("entries", entries);
+        request.put("flags", flags);
+        request.put("write", write);
+        request.put("stdinContents", null);
+        request.put("stdinResolveDir", null);
+        request.put("absWorkingDir", workDir.toAbsolutePath().toString());
+        request.put("nodePaths", List.of());
+        request.put("context", context);
+        return request;
+    }
+
+    /**
+     * @return a new build or context key, esbuild requires a key to be used by a single context
+     */
+    int nextKey() {
+        return keys.incrementAndGet();
+    }
+
+    void register(int key, ServiceContext context) {
+        contexts.put(key, context);
+    }
+
+    void unregister(int key) {
+        contexts.remove(key);
+    }
+
+    CompletableFuture<BuildResult> toBuildResult(Map<String, Object> response) {
+        return toLog(response).thenApply(log -> {
+            failOnErrors(response, log);
+            final List<OutputFile> outputFiles = new ArrayList<>();
+            if (response.get("outputFiles") instanceof List<?> list) {
+                for (Object o : list) {
+                    if (o instanceof Map<?, ?> file) {
+                        outputFiles.add(new OutputFile(asString(file.get("path")), (byte[]) file.get("contents"),
+                                asString(file.get("hash"))));
+                    }
+                }
+            }
+            return new BuildResult(log, outputFiles, asString(response.get("metafile")));
+        });
+    }
+
+    private static void failOnErrors(Map<String, Object> response, ScriptLog log) {
+        if (response.get("errors") instanceof List<?> errors && !errors.isEmpty()) {
+            log.logAll();
+            throw new CompletionException(new BundlingException("EsBuild Bundling failed", log));
+        }
+    }
+
+    CompletableFuture<ScriptLog> toLog(Map<String, Object> response) {
+        final ScriptLog log = new ScriptLog();
+        final List<?> errors = response.get("errors") instanceof List<?> l ? l : List.of();
+        final List<?> warnings = response.get("warnings") instanceof List<?> l ? l : List.of();
+        if (errors.isEmpty() && warnings.isEmpty()) {
+            return CompletableFuture.completedFuture(log);
+        }
+        return format(errors, false).thenCombine(format(warnings, true), (e, w) -> {
+            e.forEach(m -> log.add(Logger.Level.ERROR, m));
+            w.forEach(m -> log.add(Logger.Level.WARN, m));
+            return log;
+        });
+    }
+
+    private CompletableFuture<List<String>> format(List<?> messages, boolean isWarning) {
+        if (messages.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        return formatMessages(messages, isWarning).exceptionally(e -> messages.stream()
+                .map(m -> m instanceof Map<?, ?> map ? asString(map.get("text")) : String.valueOf(m))
+                .toList())
+                .thenApply(formatted -> formatted.stream()
+                        .map(m -> m.replace("[ERROR]", "").replace("[WARNING]", "").trim())
+                        .toList());
+    }
+
+    private static String asString(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * Wait for the result of a request.
+     *
+     * @param future the request future
+     * @param timeoutSeconds the timeout, no timeout if lower or equal to 0
+     * @throws BundlingException when the build failed or timed out
+     */
+    static <T> T await(CompletableFuture<T> future, long timeoutSeconds) {
+        try {
+            return timeoutSeconds > 0 ? future.get(timeoutSeconds, TimeUnit.SECONDS) : future.get();
+        } catch (TimeoutException e) {
+            throw new BundlingException("Bundling timed out after " + timeoutSeconds + " seconds");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Bundling was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BundlingException bundlingException) {
+                throw bundlingException;
+            }
+            throw new RuntimeException("EsBuild service failed", e.getCause());
+        }
+    }
+
+    /**
+     * @return the esbuild version of this service
+     */
+    public String version() {
+        return version;
+    }
+
+    public Path nodeModules() {
+        return nodeModules;
+    }
+
+    public Optional<ProcessHandle> processHandle() {
+        return Optional.ofNullable(process).map(Process::toHandle);
+    }
+
+    public boolean isAlive() {
+        final Process p = process;
+        return p != null && p.isAlive();
+    }
+
+    @Override
+    public void close() {
+        final Process p = process;
+        process = null;
+        SERVICES.remove(nodeModules, started);
+        if (p == null) {
+            return;
+        }
+        try {
+            // The service stops when its stdin is closed
+            p.getOutputStream().close();
+            if (!p.waitFor(3, TimeUnit.SECONDS)) {
+                p.destroyForcibly();
+            }
+        } catch (IOException e) {
+            p.destroyForcibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            p.destroyForcibly();
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package io.mvnpm.esbuild.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
+
+import org.jboss.logging.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.mvnpm.esbuild.deno.ScriptLog;
+import io.mvnpm.esbuild.model.BundleOptions;
+import io.mvnpm.esbuild.model.BundleResult;
+import io.mvnpm.esbuild.model.OutputFiles;
+import io.mvnpm.esbuild.script.DevProcess;
+import io.mvnpm.esbuild.script.RebuildScheduler;
+
+/**
+ * An esbuild context hosted by an {@link EsBuildService}.
+ * <p>
+ * The esbuild context is created lazily on the first build, so that invalid options are reported as a build failure.
+ * Builds of the same context are chained one after the other without blocking, a rebuild result is received through the
+ * "on-end" callback of the service before the rebuild response.
+ * <p>
+ * With in-memory output, the output files of the "on-end" callback are kept in direct buffers (see {@link OutputFiles}).
+ * <p>
+ * The metafile is enabled, so that a rebuild can be skipped when none of the changed files is an input of the previous
+ * successful build.
+ */
+public class ServiceContext implements DevProcess {
+    private static final Logger LOG = Logger.getLogger(ServiceContext.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    // Changes to those files may change the module resolution without being an input of the build
+    private static final Pattern RESOLUTION_FILES = Pattern.compile("package\\.json|[jt]sconfig(\\..*)?\\.json");
+    private final EsBuildService service;
+    private volatile int key;
+    private final Path workDir;
+    private final BundleOptions bundleOptions;
+    private final Path outDir;
+    private final RebuildScheduler scheduler;
+    private volatile boolean created;
+    private volatile Set<Path> inputs;
+    private volatile OutputFiles outputFiles = OutputFiles.empty();
+    private CompletableFuture<?> last = CompletableFuture.completedFuture(null);
+    private volatile boolean initialized;
+    private volatile boolean closed;
+    private volatile CompletableFuture<Map<String, Object>> onEnd;
+
+    ServiceContext(EsBuildService service, int key, Path workDir, BundleOptions bundleOptions) {
+        this.service = service;
+        this.key = key;
+        this.workDir = workDir;
+        this.bundleOptions = bundleOptions;
+        final String out = bundleOptions.esBuildConfig().outdir() != null ? bundleOptions.esBuildConfig().outdir() : "dist";
+        this.outDir = workDir.resolve(out);
+        this.scheduler = new RebuildScheduler(this::scheduledRebuild, bundleOptions.rebuildDebounce());
+    }
+
+    @Override
+    public void init() {
+        if (initialized) {
+            throw new IllegalStateException("ServiceContext has already been initialized");
+        }
+        if (!service.isAlive()) {
+            throw new IllegalStateException("EsBuild service is closed");
+        }
+        initialized = true;
+    }
+
+    @Override
+    public void build() throws IOException {
+        build(Set.of());
+    }
+
+    /**
+     * The build is skipped when none of the changed files is an input of the previous successful build (or a
+     * package.json/tsconfig.json).
+     */
+    @Override
+    public void build(Set<Path> changed) throws IOException {
+        if (initialized && !isAlive()) {
+            throw new IOException("ServiceContext is closed");
+        }
+        try {
+            EsBuildService.await(buildAsync(changed), timeoutSeconds());
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<BundleResult> buildAsync() {
+        return buildAsync(Set.of());
+    }
+
+    /**
+     * The build requests are debounced and coalesced by a {@link RebuildScheduler}.
+     */
+    @Override
+    public CompletableFuture<BundleResult> buildAsync(Set<Path> changed) {
+        if (!initialized) {
+            throw new IllegalStateException("ServiceContext has not been initialized");
+        }
+        return scheduler.request(changed);
+    }
+
+    @Override
+    public Set<Path> inputs() {
+        final Set<Path> files = inputs;
+        return files == null ? Set.of() : files;
+    }
+
+    @Override
+    public OutputFiles outputFiles() {
+        return outputFiles;
+    }
+
+    /**
+     * @return the statistics of the rebuilds, with the number of build requests each rebuild absorbed
+     */
+    public RebuildScheduler.Stats rebuildStats() {
+        return scheduler.stats();
+    }
+
+    private CompletableFuture<BundleResult> scheduledRebuild(Set<Path> changed) {
+        final CompletableFuture<BundleResult> result = rebuildAsync(changed).thenApply(r -> {
+            r.log().logAll();
+            return new BundleResult(outDir, workDir, r.log(), outputFiles);
+        });
+        result.whenComplete((r, e) -> {
+            if (result.isCancelled()) {
+                cancel();
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Rebuild the context and wait for the result.
+     *
+     * @return the result of the rebuild
+     * @throws io.mvnpm.esbuild.BundlingException when the build failed
+     * @throws IOException when the service or the context is closed
+     */
+    public EsBuildService.BuildResult rebuild() throws IOException {
+        return rebuild(Set.of());
+    }
+
+    /**
+     * Rebuild the context after the given files changed and wait for the result.
+     *
+     * @param changed the changed files, the context is always rebuilt when empty
+     * @return the result of the rebuild, without output files when it was skipped
+     * @throws io.mvnpm.esbuild.BundlingException when the build failed
+     * @throws IOException when the service or the context is closed
+     */
+    public EsBuildService.BuildResult rebuild(Set<Path> changed) throws IOException {
+        if (initialized && !isAlive()) {
+            throw new IOException("ServiceContext is closed");
+        }
+        try {
+            return EsBuildService.await(rebuildAsync(changed), timeoutSeconds());
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw e;
+        }
+    }
+
+    public CompletableFuture<EsBuildService.BuildResult> rebuildAsync() {
+        return rebuildAsync(Set.of());
+    }
+
+    /**
+     * Rebuild the context after the given files changed, the builds of a context run one after the other.
+     *
+     * @param changed the changed files, the context is always rebuilt when empty
+     * @return the result of the rebuild, completed exceptionally with a {@link io.mvnpm.esbuild.BundlingException} when
+     *         the build failed
+     */
+    public synchronized CompletableFuture<EsBuildService.BuildResult> rebuildAsync(Set<Path> changed) {
+        if (!initialized) {
+            throw new IllegalStateException("ServiceContext has not been initialized");
+        }
+        if (!isAlive()) {
+            return CompletableFuture.failedFuture(new IOException("ServiceContext is closed"));
+        }
+        final CompletableFuture<EsBuildService.BuildResult> next = last.handle((r, e) -> null)
+                .thenCompose(ignored -> canSkip(changed) ? CompletableFuture.completedFuture(skipped()) : doRebuild());
+        last = next;
+        // a cancelled result must not release the next build before this one is done
+        return next.copy();
+    }
+
+    private CompletableFuture<EsBuildService.BuildResult> doRebuild() {
+        return create()
+                .thenCompose(ignored -> {
+                    final CompletableFuture<Map<String, Object>> end = new CompletableFuture<>();
+                    onEnd = end;
+                    return service.request(Map.of("command", "rebuild", "key", key)).thenCompose(r -> end);
+                })
+                .thenCompose(end -> end == null
+                        ? CompletableFuture.failedFuture(new IOException("EsBuild service is closed"))
+                        : service.toBuildResult(end))
+                .whenComplete((r, e) -> {
+                    inputs = e == null ? readInputs(r.metafile()) : null;
+                    if (e == null && bundleOptions.inMemoryOutput()) {
+                        outputFiles = toOutputFiles(r.outputFiles());
+                    }
+                });
+    }
+
+    private OutputFiles toOutputFiles(List<EsBuildService.OutputFile> files) {
+        final OutputFiles.Builder builder = OutputFiles.builder(outDir,
+                files.stream().mapToInt(file -> file.contents().length).sum());
+        for (EsBuildService.OutputFile file : files) {
+            builder.add(file.path(), file.hash(), file.contents(), 0, file.contents().length);
+        }
+        return builder.build();
+    }
+
+    private boolean canSkip(Set<Path> changed) {
+        final Set<Path> previous = inputs;
+        return previous != null && !changed.isEmpty() && changed.stream()
+                .map(file -> file.toAbsolutePath().normalize())
+                .noneMatch(file -> previous.contains(file)
+                        || (file.getFileName() != null
+                                && RESOLUTION_FILES.matcher(file.getFileName().toString()).matches()));
+    }
+
+    private EsBuildService.BuildResult skipped() {
+        final ScriptLog log = new ScriptLog();
+        log.add(Logger.Level.DEBUG, "Skipping the rebuild of context %d, no input changed".formatted(key));
+        return new EsBuildService.BuildResult(log, List.of(), null);
+    }
+
+    private Set<Path> readInputs(String metafile) {
+        if (metafile == null) {
+            return null;
+        }
+        try {
+            final Set<Path> files = new HashSet<>();
+            MAPPER.readTree(metafile).path("inputs").fieldNames()
+                    .forEachRemaining(input -> files.add(workDir.resolve(input).toAbsolutePath().normalize()));
+            return Set.copyOf(files);
+        } catch (IOException e) {
+            LOG.debugf("Invalid metafile for esbuild context %d: %s", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private CompletableFuture<Void> create() {
+        if (created) {
+            return CompletableFuture.completedFuture(null);
+        }
+        service.register(key, this);
+        return service.request(service.buildRequest(key, workDir, bundleOptions.esBuildConfig(),
+                !bundleOptions.inMemoryOutput(), true))
+                .thenCompose(service::toBuildResult)
+                .thenAccept(r -> created = true)
+                .whenComplete((r, e) -> {
+                    if (e != null) {
+                        service.unregister(key);
+                        // esbuild keeps the key of a failed context (even once disposed) and crashes when it is reused,
+                        // so the next attempt gets a new key like esbuild's own client
+                        key = service.nextKey();
+                    }
+                });
+    }
+
+    void onEnd(Map<String, Object> result) {
+        final CompletableFuture<Map<String, Object>> future = onEnd;
+        if (future != null) {
+            future.complete(result);
+        }
+    }
+
+    /**
+     * Cancel the current build of this context, if any.
+     */
+    public void cancel() {
+        if (isAlive()) {
+            service.request(Map.of("command", "cancel", "key", key));
+        }
+    }
+
+    private long timeoutSeconds() {
+        return bundleOptions.debugBuild() ? -1 : bundleOptions.timeoutSeconds();
+    }
+
+    @Override
+    public Path workDir() {
+        return workDir;
+    }
+
+    @Override
+    public Path dist() {
+        return outDir;
+    }
+
+    @Override
+    public Optional<ProcessHandle> processHandle() {
+        return service.processHandle();
+    }
+
+    @Override
+    public boolean isAlive() {
+        return initialized && !closed && service.isAlive();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        service.unregister(key);
+        if (service.isAlive()) {
+            try {
+                EsBuildService.await(service.request(Map.of("command", "dispose", "key", key)), 3);
+            } catch (RuntimeException e) {
+                LOG.debugf("Could not dispose esbuild context %d: %s", key, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package io.mvnpm.esbuild.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The binary packet format of the esbuild service (the same as the one used by the esbuild JS API).
+ * <p>
+ * A packet is a little-endian uint32 length followed by the packet body: a uint32 holding the request id shifted left once
+ * (the lowest bit is set for responses), followed by a single value. Values are tagged: null (0), boolean (1), int32 (2),
+ * string (3), bytes (4), array (5) and object (6).
+ */
+final class ServiceProtocol {
+
+    private static final int NULL = 0;
+    private static final int BOOLEAN = 1;
+    private static final int INT = 2;
+    private static final int STRING = 3;
+    private static final int BYTES = 4;
+    private static final int ARRAY = 5;
+    private static final int OBJECT = 6;
+
+    record Packet(int id, boolean isRequest, Object value) {
+    }
+
+    private ServiceProtocol() {
+    }
+
+    /**
+     * @return the packet with its length prefix
+     */
+    static byte[] encode(Packet packet) {
+        final Writer writer = new Writer();
+        writer.int32(0);
+        writer.int32((packet.id() << 1) | (packet.isRequest() ? 0 : 1));
+        writer.value(packet.value());
+        final byte[] bytes = writer.toByteArray();
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(0, bytes.length - 4);
+        return bytes;
+    }
+
+    /**
+     * @param body the packet body, without the length prefix
+     */
+    static Packet decode(byte[] body) {
+        final ByteBuffer buffer = ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            final int id = buffer.getInt();
+            final Object value = readValue(buffer);
+            if (buffer.hasRemaining()) {
+                throw new IllegalArgumentException("Invalid esbuild packet: " + buffer.remaining() + " trailing bytes");
+            }
+            return new Packet(id >>> 1, (id & 1) == 0, value);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Invalid esbuild packet: truncated", e);
+        }
+    }
+
+    private static Object readValue(ByteBuffer buffer) {
+        final int tag = buffer.get();
+        switch (tag) {
+            case NULL:
+                return null;
+            case BOOLEAN:
+                return buffer.get() != 0;
+            case INT:
+                return buffer.getInt();
+            case STRING:
+                return new String(readBytes(buffer), StandardCharsets.UTF_8);
+            case BYTES:
+                return readBytes(buffer);
+            case ARRAY: {
+                final int length = buffer.getInt();
+                final List<Object> list = new ArrayList<>(length);
+                for (int i = 0; i < length; i++) {
+                    list.add(readValue(buffer));
+                }
+                return list;
+            }
+            case OBJECT: {
+                final int length = buffer.getInt();
+                final Map<String, Object> map = new LinkedHashMap<>(length * 2);
+                for (int i = 0; i < length; i++) {
+                    final String key = new String(readBytes(buffer), StandardCharsets.UTF_8);
+                    map.put(key, readValue(buffer));
+                }
+                return map;
+            }
+            default:
+                throw new IllegalArgumentException("Invalid esbuild packet: unknown value tag " + tag);
+        }
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static final class Writer extends ByteArrayOutputStream {
+
+        Writer() {
+            super(256);
+        }
+
+        void int32(int value) {
+            write(value);
+            write(value >>> 8);
+            write(value >>> 16);
+            write(value >>> 24);
+        }
+
+        void bytes(byte[] bytes) {
+            int32(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        void value(Object value) {
+            if (value == null) {
+                write(NULL);
+            } else if (value instanceof Boolean b) {
+                write(BOOLEAN);
+                write(b ? 1 : 0);
+            } else if (value instanceof Number n) {
+                write(INT);
+                int32(n.intValue());
+            } else if (value instanceof String s) {
+                write(STRING);
+                bytes(s.getBytes(StandardCharsets.UTF_8));
+            } else if (value instanceof byte[] b) {
+                write(BYTES);
+                bytes(b);
+            } else if (value instanceof List<?> list) {
+                write(ARRAY);
+                int32(list.size());
+                list.forEach(this::value);
+            } else if (value instanceof Object[] array) {
+                value(Arrays.asList(array));
+            } else if (value instanceof Map<?, ?> map) {
+                write(OBJECT);
+                int32(map.size());
+                map.forEach((k, v) -> {
+                    bytes(k.toString().getBytes(StandardCharsets.UTF_8));
+                    value(v);
+                });
+            } else {
+                throw new IllegalArgumentException("Unsupported value for the esbuild service: " + value.getClass());
+            }
+        }
+    }
+}
@@ -7,8 +7,10 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.PosixFilePermission;
+import java.util.Enumeration;
 import java.util.Set;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
@@ -28,6 +30,26 @@ public class Archives {
         }
     }
 
+    /**
+     * Extract the entries of the jar under the prefix into the target directory, without the prefix.
+     *
+     * @param source the jar, read from its central directory
+     * @param prefix the prefix of the entries to extract, ending with a '/' or empty for all the entries
+     * @param target the target directory
+     */
+    public static void unzip(ZipFile source, String prefix, Path target) throws IOException {
+        final Enumeration<? extends ZipEntry> entries = source.entries();
+        while (entries.hasMoreElements()) {
+            final ZipEntry entry = entries.nextElement();
+            if (!entry.getName().startsWith(prefix) || entry.getName().length() == prefix.length()) {
+                continue;
+            }
+            try (InputStream is = source.getInputStream(entry)) {
+                extractEntry(target, entry.getName().substring(prefix.length()), entry.isDirectory(), is);
+            }
+        }
+    }
+
     public static void unTgz(Path source, Path target) throws IOException {
         try (var is = Files.newInputStream(source);
                 var bis = new BufferedInputStream(is);
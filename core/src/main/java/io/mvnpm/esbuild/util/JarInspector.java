@@ -1,12 +1,14 @@
 package io.mvnpm.esbuild.util;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -15,6 +17,8 @@ import java.util.Optional;
 import java.util.Properties;
 import java.util.Queue;
 import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.jboss.logging.Logger;
 
@@ -77,6 +81,78 @@ public class JarInspector {
         return found;
     }
 
+    /**
+     * Find the package roots from the central directory of the jar, without extracting it.
+     *
+     * @return the package names and the entry prefix of their root (ending with a '/'), empty when the packages can only be
+     *         found once the jar is extracted (e.g. from the import map)
+     */
+    public static Map<String, String> findPackageNameAndRoot(String id, ZipFile jar, WebDependency.WebDependencyType type)
+            throws IOException {
+        if (!PACKAGE_DIRS.containsKey(type)) {
+            throw new RuntimeException("Invalid BundleType: " + type);
+        }
+        final List<? extends ZipEntry> entries = jar.stream().filter(e -> !e.isDirectory()).toList();
+        String root = null;
+        for (String packageDir : PACKAGE_DIRS.get(type)) {
+            final String prefix = packageDir.isEmpty() ? "" : packageDir + "/";
+            if (entries.stream().anyMatch(e -> e.getName().startsWith(prefix))) {
+                root = prefix;
+                break;
+            }
+        }
+        if (root == null) {
+            return Map.of();
+        }
+
+        Properties properties = new Properties();
+        if (type.equals(WebDependency.WebDependencyType.MVNPM)) { // Only mvnpm support composite
+            final Optional<? extends ZipEntry> pomProperties = searchEntry(entries, MAVEN_ROOT + "/", POM_PROPERTIES);
+            if (pomProperties.isPresent()) {
+                try (InputStream is = jar.getInputStream(pomProperties.get())) {
+                    properties.load(is);
+                } catch (IOException ex) {
+                    LOG.warnf("could not read properties ''%s''", pomProperties.get().getName());
+                }
+            }
+        }
+        checkPackagingVersion(id, properties);
+        final boolean shouldDoMultiple = MULTIPLE_GROUP_IDS.contains(properties.getProperty("groupId", ""));
+
+        Map<String, String> roots = new HashMap<>();
+        final List<? extends ZipEntry> packageJsons = searchEntries(entries, root, PACKAGE_JSON);
+        for (ZipEntry packageJson : shouldDoMultiple ? packageJsons : packageJsons.stream().limit(1).toList()) {
+            final String packageName;
+            try (InputStream is = jar.getInputStream(packageJson)) {
+                packageName = readPackageName(objectMapper.readTree(is));
+            }
+            if (packageName != null) {
+                final String name = packageJson.getName();
+                roots.putIfAbsent(packageName, name.substring(0, name.length() - PACKAGE_JSON.length()));
+            }
+        }
+        return roots;
+    }
+
+    /**
+     * @return the entries with this file name under the prefix, the least nested first (as found by searching the extracted
+     *         directories breadth-first)
+     */
+    private static List<? extends ZipEntry> searchEntries(List<? extends ZipEntry> entries, String prefix,
+            String targetFileName) {
+        return entries.stream()
+                .filter(e -> e.getName().startsWith(prefix))
+                .filter(e -> e.getName().equals(prefix + targetFileName) || e.getName().endsWith("/" + targetFileName))
+                .sorted(Comparator.comparingLong((ZipEntry e) -> e.getName().chars().filter(c -> c == '/').count())
+                        .thenComparing(ZipEntry::getName))
+                .toList();
+    }
+
+    private static Optional<? extends ZipEntry> searchEntry(List<? extends ZipEntry> entries, String prefix,
+            String targetFileName) {
+        return searchEntries(entries, prefix, targetFileName).stream().findFirst();
+    }
+
     private static Path getPackageRootPath(Path extractDir, WebDependency.WebDependencyType type) {
         if (!PACKAGE_DIRS.containsKey(type)) {
             throw new RuntimeException("Invalid BundleType: " + type);
@@ -97,6 +173,11 @@ public class JarInspector {
             properties = getPomProperties(extractDir);
         }
 
+        checkPackagingVersion(id, properties);
+        return properties;
+    }
+
+    private static void checkPackagingVersion(String id, Properties properties) {
         final String mvnpmPackagingVersion = properties.getProperty(MVNPM_PACKAGING_VERSION_KEY);
         if (mvnpmPackagingVersion != null) {
             final String[] split = mvnpmPackagingVersion.split("\\.");
@@ -107,8 +188,6 @@ public class JarInspector {
                         id);
             }
         }
-
-        return properties;
     }
 
     private static Map<String, Path> findPackageNameAndRootWithPackage(Path root, boolean shouldDoMultiple) {
@@ -188,16 +267,19 @@ public class JarInspector {
 
     private static String readPackageName(Path path) {
         try {
-            JsonNode object = objectMapper.readTree(path.toFile());
-            if (!object.has("name")) {
-                return null;
-            }
-            return object.get("name").asText();
+            return readPackageName(objectMapper.readTree(path.toFile()));
         } catch (IOException ex) {
             throw new UncheckedIOException(ex);
         }
     }
 
+    private static String readPackageName(JsonNode object) {
+        if (!object.has("name")) {
+            return null;
+        }
+        return object.get("name").asText();
+    }
+
     private static Properties getPomProperties(Path extractDir) {
         Properties properties = new Properties();
 
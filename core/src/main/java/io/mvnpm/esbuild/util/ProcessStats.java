@@ -0,0 +1,49 @@
+package io.mvnpm.esbuild.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.stream.Stream;
+
+public class ProcessStats {
+
+    private static final Path PROC = Path.of("/proc");
+
+    /**
+     * Read the resident set size of a process and of its descendants (esbuild runs as a child of the JS runtimes).
+     *
+     * @param process the process
+     * @return the resident set size in bytes, empty when not available (it is read from /proc, so only on Linux)
+     */
+    public static OptionalLong rss(ProcessHandle process) {
+        final List<ProcessHandle> handles = Stream.concat(Stream.of(process), process.descendants()).toList();
+        long total = 0;
+        boolean found = false;
+        for (ProcessHandle handle : handles) {
+            final OptionalLong rss = processRss(handle.pid());
+            if (rss.isPresent()) {
+                total += rss.getAsLong();
+                found = true;
+            }
+        }
+        return found ? OptionalLong.of(total) : OptionalLong.empty();
+    }
+
+    private static OptionalLong processRss(long pid) {
+        final Path status = PROC.resolve(Long.toString(pid)).resolve("status");
+        if (!Files.isReadable(status)) {
+            return OptionalLong.empty();
+        }
+        try (Stream<String> lines = Files.lines(status)) {
+            // VmRSS:     12345 kB
+            return lines.filter(l -> l.startsWith("VmRSS:"))
+                    .mapToLong(l -> Long.parseLong(l.substring(6).replace("kB", "").trim()) * 1024)
+                    .findFirst();
+        } catch (IOException | UncheckedIOException | NumberFormatException e) {
+            return OptionalLong.empty();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package io.mvnpm.esbuild.util;
+
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Deletes directories without blocking the build: the directory is atomically renamed into a {@value #TRASH_DIR}
+ * directory next to it, then its subtrees are deleted in parallel on background threads.
+ * <p>
+ * The trash left by a previous JVM (e.g. killed during a deletion) is reclaimed the first time a trash directory is used.
+ * The deletion is synchronous when the directory can't be renamed (e.g. a file is locked on Windows).
+ */
+public final class Trash {
+    public static final String TRASH_DIR = ".trash";
+
+    private static final Logger LOG = Logger.getLogger(Trash.class);
+    private static final Set<Path> SWEPT = ConcurrentHashMap.newKeySet();
+    private static final AtomicInteger THREADS = new AtomicInteger();
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())), r -> {
+                final Thread t = new Thread(r, "esbuild-trash-" + THREADS.incrementAndGet());
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            });
+
+    private Trash() {
+    }
+
+    /**
+     * Delete a path using the {@value #TRASH_DIR} directory next to it.
+     *
+     * @param path the path to delete
+     * @return completed once the path is reclaimed, it does not exist anymore once returned
+     */
+    public static CompletableFuture<Void> delete(Path path) throws IOException {
+        final Path parent = path.toAbsolutePath().normalize().getParent();
+        if (parent == null) {
+            PathUtils.deleteRecursive(path);
+            return CompletableFuture.completedFuture(null);
+        }
+        return delete(path, parent.resolve(TRASH_DIR));
+    }
+
+    /**
+     * Delete a path using the given trash directory, which must be on the same file store.
+     *
+     * @param path the path to delete
+     * @param trashDir the trash directory
+     * @return completed once the path is reclaimed, it does not exist anymore once returned
+     */
+    public static CompletableFuture<Void> delete(Path path, Path trashDir) throws IOException {
+        if (!Files.exists(path)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final Path trash = trashDir.toAbsolutePath().normalize();
+        sweep(trash);
+        final Path trashed = trash.resolve(path.getFileName() + "-" + UUID.randomUUID());
+        for (int attempt = 0; attempt < 3; attempt++) {
+            try {
+                Files.createDirectories(trash);
+                Files.move(path, trashed, StandardCopyOption.ATOMIC_MOVE);
+                LOG.debugf("moved ''%s'' to the trash ''%s''", path, trashed);
+                return reclaim(trashed);
+            } catch (NoSuchFileException e) {
+                if (!Files.exists(path)) {
+                    // deleted concurrently
+                    return CompletableFuture.completedFuture(null);
+                }
+                // the empty trash directory was deleted by a reclamation
+            } catch (FileSystemException e) {
+                LOG.debugf("could not move ''%s'' to the trash, deleting it now: %s", path, e.getMessage());
+                break;
+            }
+        }
+        PathUtils.deleteRecursive(path);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Reclaim the content of a trash directory left by a previous JVM, once per directory.
+     */
+    private static void sweep(Path trashDir) {
+        if (!SWEPT.add(trashDir) || !Files.isDirectory(trashDir)) {
+            return;
+        }
+        try (Stream<Path> leftovers = Files.list(trashDir)) {
+            for (Path leftover : leftovers.toList()) {
+                LOG.debugf("reclaiming the leftover trash ''%s''", leftover);
+                reclaim(leftover);
+            }
+        } catch (IOException e) {
+            LOG.debugf("could not list the trash ''%s'': %s", trashDir, e.getMessage());
+        }
+    }
+
+    private static CompletableFuture<Void> reclaim(Path trashed) {
+        final List<Path> subtrees = new ArrayList<>();
+        if (Files.isDirectory(trashed)) {
+            try (Stream<Path> children = Files.list(trashed)) {
+                children.forEach(subtrees::add);
+            } catch (IOException e) {
+                LOG.debugf("could not list ''%s'': %s", trashed, e.getMessage());
+            }
+        }
+        final CompletableFuture<?>[] deletions = subtrees.stream()
+                .map(subtree -> CompletableFuture.runAsync(() -> deleteQuietly(subtree), EXECUTOR))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(deletions).thenRunAsync(() -> {
+            deleteQuietly(trashed);
+            try {
+                Files.deleteIfExists(trashed.getParent());
+            } catch (DirectoryNotEmptyException e) {
+                // still used by another deletion
+            } catch (IOException e) {
+                LOG.debugf("could not delete the trash ''%s'': %s", trashed.getParent(), e.getMessage());
+            }
+        }, EXECUTOR);
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            PathUtils.deleteRecursive(path);
+        } catch (IOException | RuntimeException e) {
+            LOG.debugf("could not delete ''%s'': %s", path, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package io.mvnpm.esbuild.watch;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.jboss.logging.Logger;
+
+import io.mvnpm.esbuild.BundlingException;
+import io.mvnpm.esbuild.model.BundleOptions;
+import io.mvnpm.esbuild.model.WatchBuildResult;
+import io.mvnpm.esbuild.script.DevProcess;
+import io.mvnpm.esbuild.util.Trash;
+
+/**
+ * Watch the files of a dev process and rebuild it when they change.
+ * <p>
+ * The roots (the work directory by default) are watched recursively, except node_modules and the output directory. The
+ * inputs of the last successful build located outside the roots (and outside node_modules) are watched too, only their
+ * directory is registered. The rebuilds are requested with the changed files, so they are coalesced and skipped when no
+ * input changed (see {@link DevProcess#build(Set)}).
+ * <p>
+ * A {@link WatchService} is used when the platform provides a native one, the files are polled otherwise (or when the
+ * {@value #POLLING_PROPERTY} system property is true).
+ */
+public class DevWatcher implements Closeable {
+    public static final String POLLING_PROPERTY = "esbuild-java.watch.polling";
+    private static final Logger LOG = Logger.getLogger(DevWatcher.class);
+    private static final AtomicInteger WATCHER_COUNTER = new AtomicInteger();
+    private static final Set<String> IGNORED_DIRS = Set.of(BundleOptions.NODE_MODULES, ".git", Trash.TRASH_DIR);
+
+    private final DevProcess process;
+    private final List<Path> roots;
+    private final Path dist;
+    private final Duration pollInterval;
+    private final boolean closeProcess;
+    private final List<Consumer<WatchBuildResult>> listeners = new CopyOnWriteArrayList<>();
+    private final Map<WatchKey, Path> keys = new ConcurrentHashMap<>();
+    private final Set<Path> watchedDirs = ConcurrentHashMap.newKeySet();
+    private volatile Set<Path> inputs = Set.of();
+    private volatile boolean closed;
+    private WatchService watchService;
+    private Thread thread;
+
+    /**
+     * Watch the work directory of the process.
+     */
+    public DevWatcher(DevProcess process) {
+        this(process, List.of(process.workDir()), Duration.ofMillis(500), false);
+    }
+
+    /**
+     * @param process the dev process to rebuild
+     * @param roots the directories to watch recursively
+     * @param pollInterval the interval between two scans when polling
+     * @param closeProcess true to close the process with this watcher
+     */
+    public DevWatcher(DevProcess process, Collection<Path> roots, Duration pollInterval, boolean closeProcess) {
+        this.process = process;
+        this.roots = roots.stream().map(DevWatcher::normalize).toList();
+        this.dist = normalize(process.dist());
+        this.pollInterval = pollInterval;
+        this.closeProcess = closeProcess;
+    }
+
+    public DevWatcher addListener(Consumer<WatchBuildResult> listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    public void removeListener(Consumer<WatchBuildResult> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Start watching and run a first build, its result is published to the listeners.
+     */
+    public synchronized void start() throws IOException {
+        if (thread != null) {
+            throw new IllegalStateException("DevWatcher has already been started");
+        }
+        watchService = newWatchService();
+        if (watchService != null) {
+            for (Path root : roots) {
+                registerRecursive(root, new HashSet<>());
+            }
+        }
+        thread = new Thread(watchService != null ? this::watch : this::poll,
+                "DevWatcher-" + WATCHER_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        thread.start();
+        LOG.debugf("Watching %s with %s", roots, watchService != null ? "a watch service" : "polling");
+        rebuild(Set.of());
+    }
+
+    /**
+     * @return true if the files are polled instead of using a native watch service
+     */
+    public boolean isPolling() {
+        return thread != null && watchService == null;
+    }
+
+    public DevProcess process() {
+        return process;
+    }
+
+    private static WatchService newWatchService() {
+        if (Boolean.getBoolean(POLLING_PROPERTY)) {
+            return null;
+        }
+        try {
+            final WatchService service = FileSystems.getDefault().newWatchService();
+            // The JDK polling implementation (e.g. macOS) is slower than polling the watched files ourselves
+            if (service.getClass().getName().contains("Polling")) {
+                service.close();
+                return null;
+            }
+            return service;
+        } catch (UnsupportedOperationException | IOException e) {
+            LOG.debugf("No watch service available, falling back to polling: %s", e.getMessage());
+            return null;
+        }
+    }
+
+    private void watch() {
+        while (!closed) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            final Set<Path> changed = new HashSet<>();
+            boolean overflow = false;
+            // Drain all the ready keys, so that a burst of events triggers a single rebuild request
+            while (key != null) {
+                final Path dir = keys.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        overflow = true;
+                        continue;
+                    }
+                    if (dir == null) {
+                        continue;
+                    }
+                    final Path file = dir.resolve((Path) event.context());
+                    if (isIgnored(file)) {
+                        continue;
+                    }
+                    if (event.kind() == ENTRY_CREATE && isUnderRoot(file) && Files.isDirectory(file)) {
+                        registerRecursive(file, changed);
+                    } else if (isUnderRoot(file) || inputs.contains(file)) {
+                        changed.add(file);
+                    }
+                }
+                if (!key.reset()) {
+                    keys.remove(key);
+                    if (dir != null) {
+                        watchedDirs.remove(dir);
+                    }
+                }
+                try {
+                    key = watchService.poll();
+                } catch (ClosedWatchServiceException e) {
+                    return;
+                }
+            }
+            if (overflow) {
+                rebuild(Set.of());
+            } else if (!changed.isEmpty()) {
+                rebuild(changed);
+            }
+        }
+    }
+
+    private void poll() {
+        Map<Path, Long> snapshot = snapshot();
+        while (!closed) {
+            try {
+                Thread.sleep(pollInterval.toMillis());
+            } catch (InterruptedException e) {
+                return;
+            }
+            final Map<Path, Long> previous = snapshot;
+            final Map<Path, Long> current = snapshot();
+            final Set<Path> changed = new HashSet<>();
+            current.forEach((file, modified) -> {
+                if (!Objects.equals(previous.get(file), modified)) {
+                    changed.add(file);
+                }
+            });
+            for (Path file : previous.keySet()) {
+                if (!current.containsKey(file)) {
+                    changed.add(file);
+                }
+            }
+            snapshot = current;
+            if (!changed.isEmpty()) {
+                rebuild(changed);
+            }
+        }
+    }
+
+    private Map<Path, Long> snapshot() {
+        final Map<Path, Long> files = new HashMap<>();
+        for (Path root : roots) {
+            try {
+                Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                        return isIgnored(dir) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        files.put(normalize(file), attrs.lastModifiedTime().toMillis());
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                LOG.debugf("Could not scan ''%s'': %s", root, e.getMessage());
+            }
+        }
+        for (Path input : inputs) {
+            if (!files.containsKey(input)) {
+                try {
+                    files.put(input, Files.getLastModifiedTime(input).toMillis());
+                } catch (IOException e) {
+                    // deleted
+                }
+            }
+        }
+        return files;
+    }
+
+    private void registerRecursive(Path root, Set<Path> created) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (isIgnored(dir)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    register(normalize(dir));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    // The files created with a new directory may be written before it is registered
+                    created.add(normalize(file));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            LOG.debugf("Could not watch ''%s'': %s", root, e.getMessage());
+        }
+    }
+
+    private void register(Path dir) {
+        if (!watchedDirs.add(dir)) {
+            return;
+        }
+        try {
+            keys.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+        } catch (IOException | ClosedWatchServiceException e) {
+            watchedDirs.remove(dir);
+            LOG.debugf("Could not watch ''%s'': %s", dir, e.getMessage());
+        }
+    }
+
+    private void rebuild(Set<Path> changed) {
+        if (closed) {
+            return;
+        }
+        process.buildAsync(changed).whenComplete((result, e) -> {
+            updateInputs();
+            final WatchBuildResult watchResult;
+            if (e == null) {
+                watchResult = new WatchBuildResult(result.logs().toString());
+            } else {
+                final Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                final BundlingException bundlingException = cause instanceof BundlingException b ? b
+                        : new BundlingException("EsBuild Bundling failed: " + cause.getMessage());
+                watchResult = new WatchBuildResult(bundlingException.logs().toString(), bundlingException);
+            }
+            for (Consumer<WatchBuildResult> listener : listeners) {
+                try {
+                    listener.accept(watchResult);
+                } catch (RuntimeException ex) {
+                    LOG.warnf(ex, "Watch listener failed");
+                }
+            }
+        });
+    }
+
+    private void updateInputs() {
+        final Set<Path> files = new HashSet<>();
+        for (Path input : process.inputs()) {
+            final Path file = normalize(input);
+            if (isUnderRoot(file) || isIgnored(file)) {
+                continue;
+            }
+            files.add(file);
+            if (watchService != null && file.getParent() != null) {
+                register(file.getParent());
+            }
+        }
+        inputs = Set.copyOf(files);
+    }
+
+    private boolean isUnderRoot(Path file) {
+        for (Path root : roots) {
+            if (file.startsWith(root)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isIgnored(Path path) {
+        if (path.startsWith(dist)) {
+            return true;
+        }
+        for (Path name : path) {
+            if (IGNORED_DIRS.contains(name.toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        final Thread t = thread;
+        if (t != null) {
+            t.interrupt();
+        }
+        if (watchService != null) {
+            watchService.close();
+        }
+        if (closeProcess) {
+            process.close();
+        }
+    }
+}
@@ -25,10 +25,10 @@ public record EsBuildPluginTailwind(Source base, List<Source> sources, boolean o
     }
 
     @Override
-    public void beforeBuild(Path workDir) {
+    public void beforeBuild(Path pluginsDir) {
         try (InputStream tailwindPlugin = EsBuildPluginTailwind.class.getResourceAsStream("/esbuild-plugin-tailwind.js")) {
             Objects.requireNonNull(tailwindPlugin, "tailwindPlugin is required");
-            Files.copy(tailwindPlugin, workDir.resolve("esbuild-plugin-tailwind.js"));
+            Files.copy(tailwindPlugin, pluginsDir.resolve("esbuild-plugin-tailwind.js"));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -25,13 +25,16 @@ export default function esbuildPluginTailwind(opts = {}) {
 
     let sources = opts.sources || [];
     let base = opts.base || {};
-    const roots = new DefaultMap(
-        (id) => new Root(id, base.base, base.pattern, sources, /* enableSourceMaps */ false)
-    )
 
     return {
         name: 'tailwindcss',
         setup(build) {
+            // A worker builds in many work directories, so the default base is the one of the build
+            const workDir = build.initialOptions.absWorkingDir || process.cwd()
+            const roots = new DefaultMap(
+                (id) => new Root(id, base.base || workDir, base.pattern, sources, /* enableSourceMaps */ false)
+            )
+
             build.onLoad({ filter: /\.css$/ }, async (args) => {
                 if (!isCssFile(args.path)) return
 
@@ -2,21 +2,32 @@ package io.mvnpm.esbuild;
 
 import static io.mvnpm.esbuild.BundlerTestHelper.executeTest;
 import static io.mvnpm.esbuild.BundlerTestHelper.getBundleOptions;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.apache.maven.utils.Os;
 import org.junit.jupiter.api.Test;
 
 import io.mvnpm.esbuild.model.BundleOptions;
 import io.mvnpm.esbuild.model.BundleResult;
+import io.mvnpm.esbuild.model.EsBuildConfig;
 import io.mvnpm.esbuild.model.WebDependency.WebDependencyType;
+import io.mvnpm.esbuild.runtime.Runtimes;
+import io.mvnpm.esbuild.script.ContextCache;
+import io.mvnpm.esbuild.script.WorkerPool;
 
 public class BundlerBuildTestBase {
 
@@ -92,6 +103,135 @@ public class BundlerBuildTestBase {
         assertTrue(bundleResult.logs().countWarnings() > 0);
     }
 
+    @Test
+    public void shouldBundleWithWorkerPool() throws URISyntaxException, IOException {
+        final BundleOptions bundleOptions = getBundleOptions(List.of("/mvnpm/stimulus-3.2.1.jar"), WebDependencyType.MVNPM,
+                "application-mvnpm.js").withWorkDir(Files.createTempDirectory("worker-pool")).build();
+        try (WorkerPool pool = new WorkerPool(new WorkerPool.Config(1, Duration.ofMinutes(1), Duration.ofMinutes(1)))) {
+            final BundleResult first = Bundler.bundle(bundleOptions, true, pool);
+            assertTrue(Files.list(first.dist()).count() > 0);
+            final BundleResult second = Bundler.bundle(bundleOptions, false, pool);
+            assertTrue(Files.list(second.dist()).count() > 0);
+            assertEquals(1, pool.size(), "the worker is reused");
+        }
+    }
+
+    @Test
+    public void shouldReuseWorkerAcrossWorkDirs() throws URISyntaxException, IOException {
+        final Path root = Files.createTempDirectory("worker-pool-work-dirs");
+        final Path nodeModules = root.resolve(BundleOptions.NODE_MODULES);
+        try (WorkerPool pool = new WorkerPool(new WorkerPool.Config(1, Duration.ofMinutes(1), Duration.ofMinutes(1)))) {
+            for (String name : List.of("first", "second")) {
+                final BundleOptions bundleOptions = getBundleOptions(List.of("/mvnpm/stimulus-3.2.1.jar"),
+                        WebDependencyType.MVNPM, "application-mvnpm.js")
+                        .withEsConfig(EsBuildConfig.builder().fixedEntryNames().build())
+                        .withWorkDir(Files.createDirectories(root.resolve(name)))
+                        .withNodeModulesDir(nodeModules)
+                        .build();
+                final BundleResult result = Bundler.bundle(bundleOptions, true, pool);
+                assertEquals(root.resolve(name), result.workDir());
+                assertTrue(Files.exists(result.dist().resolve("application-mvnpm.js")), "the build writes in its work dir");
+                assertEquals(1, pool.size(), "the worker is reused");
+            }
+        }
+    }
+
+    @Test
+    public void shouldCloseIdleWorkers() throws URISyntaxException, IOException, InterruptedException {
+        final BundleOptions bundleOptions = getBundleOptions(List.of("/mvnpm/stimulus-3.2.1.jar"), WebDependencyType.MVNPM,
+                "application-mvnpm.js").withWorkDir(Files.createTempDirectory("worker-pool-idle")).build();
+        try (WorkerPool pool = new WorkerPool(new WorkerPool.Config(1, Duration.ofSeconds(1), Duration.ofMillis(200)))) {
+            Bundler.bundle(bundleOptions, true, pool);
+            assertEquals(1, pool.size());
+            // the health checks run several times before the idle timeout
+            for (int i = 0; i < 100 && pool.size() > 0; i++) {
+                Thread.sleep(100);
+            }
+            assertEquals(0, pool.size(), "the idle worker is closed");
+        }
+    }
+
+    @Test
+    public void shouldBundleConcurrently() throws URISyntaxException, IOException {
+        final int count = Math.max(2, Math.min(Runtime.getRuntime().availableProcessors(), 4));
+        final Path root = Files.createTempDirectory("concurrent-bundles");
+        final Path nodeModules = root.resolve(BundleOptions.NODE_MODULES);
+        final List<BundleOptions> options = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // Deno runs a process per bundle, the plugin-less bundles would run on the shared esbuild service otherwise
+            options.add(getBundleOptions(List.of("/mvnpm/stimulus-3.2.1.jar"), WebDependencyType.MVNPM, "application-mvnpm.js")
+                    .withEsConfig(EsBuildConfig.builder().fixedEntryNames().build())
+                    .withWorkDir(Files.createDirectories(root.resolve("bundle-" + i)))
+                    .withNodeModulesDir(nodeModules)
+                    .withRuntime(Runtimes.DENO)
+                    .build());
+        }
+        Bundler.install(nodeModules, options.get(0).dependencies());
+
+        final List<CompletableFuture<BundleResult>> futures = options.stream()
+                .map(option -> CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return Bundler.bundle(option, false);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }))
+                .toList();
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+        for (int i = 0; i < count; i++) {
+            final BundleResult result = futures.get(i).join();
+            assertEquals(root.resolve("bundle-" + i), result.workDir());
+            final Path app = result.dist().resolve("application-mvnpm.js");
+            assertTrue(Files.exists(app), "each bundle writes its own output");
+            assertTrue(Files.size(app) > 0);
+            assertEquals(0, result.logs().countErrors());
+        }
+    }
+
+    @Test
+    public void shouldBundleAsync() throws URISyntaxException, IOException {
+        final BundleOptions bundleOptions = getBundleOptions(List.of("/mvnpm/stimulus-3.2.1.jar"), WebDependencyType.MVNPM,
+                "application-mvnpm.js").withWorkDir(Files.createTempDirectory("async")).build();
+        final BundleResult result = Bundler.bundleAsync(bundleOptions).join();
+        assertTrue(Files.list(result.dist()).count() > 0);
+    }
+
+    @Test
+    public void shouldBundleInMemory() throws URISyntaxException, IOException {
+        final Path workDir = Files.createTempDirectory("in-memory");
+        final BundleOptions bundleOptions = getBundleOptions(List.of("/mvnpm/stimulus-3.2.1.jar"), WebDependencyType.MVNPM,
+                "application-mvnpm.js").withWorkDir(workDir).withInMemoryOutput(true).build();
+        final BundleResult result = Bundler.bundle(bundleOptions, true);
+        assertFalse(Files.exists(result.dist()), "nothing is written");
+        assertFalse(result.outputFiles().isEmpty());
+        assertTrue(result.outputFiles().paths().stream().anyMatch(path -> path.endsWith(".js")));
+        assertTrue(result.outputFiles().files().stream().allMatch(file -> file.contents().isDirect()));
+    }
+
+    @Test
+    public void shouldReuseCachedContext() throws URISyntaxException, IOException {
+        final Path workDir = Files.createTempDirectory("context-cache");
+        final BundleOptions bundleOptions = getBundleOptions(List.of("/mvnpm/stimulus-3.2.1.jar"), WebDependencyType.MVNPM,
+                "application-mvnpm.js").withEsConfig(EsBuildConfig.builder().fixedEntryNames().build())
+                .withWorkDir(workDir).withContextCache(true).build();
+        final long hits = ContextCache.shared().stats().hits();
+        final BundleResult first = Bundler.bundle(bundleOptions, true);
+        final BundleResult second = Bundler.bundle(bundleOptions, false);
+        assertTrue(Files.exists(first.dist().resolve("application-mvnpm.js")));
+        assertTrue(Files.exists(second.dist().resolve("application-mvnpm.js")), "the output is written again");
+        assertEquals(hits + 1, ContextCache.shared().stats().hits(), "the second build reuses the context");
+    }
+
+    @Test
+    public void shouldFailAsync() throws URISyntaxException, IOException {
+        final BundleOptions bundleOptions = getBundleOptions(List.of("/mvnpm/stimulus-3.2.1.jar"), WebDependencyType.MVNPM,
+                "application-error.js").build();
+        final CompletionException e = assertThrows(CompletionException.class,
+                () -> Bundler.bundleAsync(bundleOptions).join());
+        assertTrue(e.getCause() instanceof BundlingException);
+    }
+
     @Test
     public void shouldResolveRelativeFolders() throws URISyntaxException, IOException {
         // given
@@ -8,11 +8,14 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -22,10 +25,14 @@ import java.util.concurrent.atomic.AtomicReference;
 import org.junit.jupiter.api.Test;
 
 import io.mvnpm.esbuild.model.BundleOptions;
+import io.mvnpm.esbuild.model.BundleResult;
 import io.mvnpm.esbuild.model.DevResult;
 import io.mvnpm.esbuild.model.EsBuildConfig;
+import io.mvnpm.esbuild.model.WatchBuildResult;
 import io.mvnpm.esbuild.model.WebDependency.WebDependencyType;
 import io.mvnpm.esbuild.script.DevProcess;
+import io.mvnpm.esbuild.script.WorkerScript;
+import io.mvnpm.esbuild.watch.DevWatcher;
 
 public class BundlerDevTestBase {
 
@@ -62,6 +69,71 @@ public class BundlerDevTestBase {
         assertFalse(process.isAlive());
     }
 
+    @Test
+    public void shouldCloseProcessWithWatcher() throws URISyntaxException, IOException {
+        final BundleOptions options = getBundleOptions(List.of("/mvnpm/stimulus-3.2.1.jar"),
+                WebDependencyType.MVNPM, "application-mvnpm.js").build();
+        final CompletableFuture<WatchBuildResult> firstBuild = new CompletableFuture<>();
+        final DevWatcher watcher = Bundler.watch(options, true, firstBuild::complete);
+        final DevProcess process = watcher.process();
+        firstBuild.orTimeout(30, TimeUnit.SECONDS).join();
+        assertTrue(process.isAlive(), "process is alive");
+        watcher.close();
+        assertFalse(process.isAlive(), "the watcher closes its process");
+    }
+
+    @Test
+    public void shouldDevBuildAsync() throws URISyntaxException, IOException {
+        final BundleOptions options = getBundleOptions(List.of("/mvnpm/stimulus-3.2.1.jar"),
+                WebDependencyType.MVNPM,
+                "application-mvnpm.js").withEsConfig(EsBuildConfig.builder().fixedEntryNames().build()).build();
+        try (DevResult devResult = Bundler.dev(options, true)) {
+            final DevProcess process = devResult.process();
+            final BundleResult result = process.buildAsync().join();
+            assertTrue(Files.exists(result.dist().resolve("application-mvnpm.js")));
+
+            // a cancelled build keeps the process alive
+            process.buildAsync().cancel(false);
+            assertTrue(process.isAlive(), "process is alive");
+            process.buildAsync().join();
+        }
+    }
+
+    @Test
+    public void shouldPrewarmDev() throws URISyntaxException, IOException {
+        final BundleOptions options = getBundleOptions(List.of("/mvnpm/stimulus-3.2.1.jar"),
+                WebDependencyType.MVNPM,
+                "application-mvnpm.js").withEsConfig(EsBuildConfig.builder().fixedEntryNames().build()).build();
+        try (DevResult devResult = Bundler.prewarm(options)) {
+            final DevProcess process = devResult.process();
+            // the first build waits for the installation and the process startup
+            process.build();
+            assertTrue(process.isAlive(), "process is alive");
+            assertTrue(Files.exists(process.dist().resolve("application-mvnpm.js")));
+        }
+    }
+
+    @Test
+    public void shouldSkipBuildWhenNoInputChanged() throws URISyntaxException, IOException {
+        final BundleOptions options = getBundleOptions(List.of("/mvnpm/stimulus-3.2.1.jar"),
+                WebDependencyType.MVNPM,
+                "application-mvnpm.js").withEsConfig(EsBuildConfig.builder().fixedEntryNames().build()).build();
+        try (DevResult devResult = Bundler.dev(options, true)) {
+            final DevProcess process = devResult.process();
+            process.build();
+            final Path app = process.workDir().resolve("application-mvnpm.js");
+            final Path other = Files.writeString(process.workDir().resolve("not-imported.js"), "alert(\"bar\");");
+            final Path distApp = process.dist().resolve("application-mvnpm.js");
+
+            Files.writeString(app, "\nalert(\"foo\");", StandardOpenOption.APPEND);
+            process.build(Set.of(other));
+            assertFalse(Files.readString(distApp).contains("alert(\"foo\");"), "the build is skipped");
+
+            process.build(Set.of(other, app));
+            assertTrue(Files.readString(distApp).contains("alert(\"foo\");"));
+        }
+    }
+
     @Test
     public void shouldMultipleDevInMultipleThreads() throws URISyntaxException, IOException, InterruptedException {
         final BundleOptions options = getBundleOptions(
@@ -147,6 +219,43 @@ public class BundlerDevTestBase {
         }
     }
 
+    @Test
+    public void shouldDevSeveralContextsOnSharedWorker() throws URISyntaxException, IOException {
+        // given
+        final Path root = Files.createTempDirectory("shared-worker");
+        final Path nodeModules = root.resolve(BundleOptions.NODE_MODULES);
+        final BundleOptions first = getBundleOptions(List.of("/mvnpm/stimulus-3.2.1.jar"), WebDependencyType.MVNPM,
+                "application-mvnpm.js")
+                .withWorkDir(Files.createDirectories(root.resolve("first")))
+                .withNodeModulesDir(nodeModules)
+                .withEsConfig(EsBuildConfig.builder().fixedEntryNames().build()).build();
+        final BundleOptions second = first.edit().withWorkDir(Files.createDirectories(root.resolve("second"))).build();
+        Bundler.install(nodeModules, first.dependencies());
+
+        // when
+        try (WorkerScript host = new WorkerScript(root, BundleOptions.builder().withNodeModulesDir(nodeModules).build())) {
+            host.init();
+            try (DevResult a = Bundler.dev(first, false, host); DevResult b = Bundler.dev(second, false, host)) {
+                CompletableFuture.allOf(
+                        CompletableFuture.runAsync(() -> build(a.process())),
+                        CompletableFuture.runAsync(() -> build(b.process()))).join();
+
+                // then
+                assertTrue(Files.exists(a.process().dist().resolve("application-mvnpm.js")));
+                assertTrue(Files.exists(b.process().dist().resolve("application-mvnpm.js")));
+            }
+            assertTrue(host.isAlive(), "closing a hosted context keeps the worker alive");
+        }
+    }
+
+    private static void build(DevProcess process) {
+        try {
+            process.build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     @Test
     public void shouldDevWithError() throws URISyntaxException, IOException, InterruptedException {
 
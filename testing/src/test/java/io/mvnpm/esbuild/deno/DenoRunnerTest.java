@@ -0,0 +1,162 @@
+package io.mvnpm.esbuild.deno;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class DenoRunnerTest {
+
+    @Test
+    public void shouldReadBackToBackFrames() throws Exception {
+        // given
+        final byte[] bytes = concat(frame("first"), frame(""), frame("third"));
+        final BlockingQueue<byte[]> frames = new LinkedBlockingQueue<>();
+
+        // when
+        DenoRunner.pumpFrames(new ByteArrayInputStream(bytes), frames::add).get(5, TimeUnit.SECONDS);
+
+        // then
+        assertEquals(3, frames.size());
+        assertArrayEquals(utf8("first"), frames.poll());
+        assertArrayEquals(new byte[0], frames.poll());
+        assertArrayEquals(utf8("third"), frames.poll());
+    }
+
+    @Test
+    public void shouldReadFrameSplitAcrossReads() throws Exception {
+        // given
+        final PipedOutputStream out = new PipedOutputStream();
+        final PipedInputStream in = new PipedInputStream(out);
+        final BlockingQueue<byte[]> frames = new LinkedBlockingQueue<>();
+        final CompletableFuture<Void> pump = DenoRunner.pumpFrames(in, frames::add);
+        final byte[] frame = frame("split payload");
+
+        // when
+        out.write(frame, 0, 2);
+        out.flush();
+        assertNull(frames.poll(200, TimeUnit.MILLISECONDS), "the length is not complete");
+        out.write(frame, 2, 6);
+        out.flush();
+        assertNull(frames.poll(200, TimeUnit.MILLISECONDS), "the payload is not complete");
+        out.write(frame, 8, frame.length - 8);
+        out.close();
+
+        // then
+        assertArrayEquals(utf8("split payload"), frames.poll(5, TimeUnit.SECONDS));
+        pump.get(5, TimeUnit.SECONDS);
+        assertTrue(frames.isEmpty());
+    }
+
+    @Test
+    public void shouldRejectFrameOverTheCap() {
+        // given
+        final byte[] bytes = concat(frame("valid"), length(256 * 1024 * 1024 + 1));
+        final BlockingQueue<byte[]> frames = new LinkedBlockingQueue<>();
+
+        // when
+        final CompletableFuture<Void> pump = DenoRunner.pumpFrames(new ByteArrayInputStream(bytes), frames::add);
+
+        // then
+        final ExecutionException e = assertThrows(ExecutionException.class, () -> pump.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(UncheckedIOException.class, e.getCause());
+        assertTrue(e.getCause().getMessage().contains("Invalid frame length: " + (256 * 1024 * 1024 + 1)));
+        assertEquals(1, frames.size(), "the frames before the invalid one are delivered");
+    }
+
+    @Test
+    public void shouldStopAtEndOfStreamInTheMiddleOfAFrame() throws Exception {
+        // given
+        final byte[] truncated = frame("truncated");
+        final byte[] bytes = concat(frame("complete"), Arrays.copyOf(truncated, truncated.length - 3));
+        final BlockingQueue<byte[]> frames = new LinkedBlockingQueue<>();
+
+        // when
+        DenoRunner.pumpFrames(new ByteArrayInputStream(bytes), frames::add).get(5, TimeUnit.SECONDS);
+
+        // then
+        assertEquals(1, frames.size(), "the truncated frame is not delivered");
+        assertArrayEquals(utf8("complete"), frames.poll());
+    }
+
+    @Test
+    public void shouldNotDelayPumpsBehindStreamsThatNeverEnd() throws Exception {
+        // given: more never-ending streams than processors, a single or fixed size pump pool would be exhausted
+        final List<PipedOutputStream> blocked = new ArrayList<>();
+        for (int i = 0; i <= Runtime.getRuntime().availableProcessors(); i++) {
+            final PipedOutputStream line = new PipedOutputStream();
+            DenoRunner.pump(new PipedInputStream(line), l -> {
+            });
+            final PipedOutputStream frame = new PipedOutputStream();
+            DenoRunner.pumpFrames(new PipedInputStream(frame), f -> {
+            });
+            blocked.add(line);
+            blocked.add(frame);
+        }
+        final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        final BlockingQueue<byte[]> frames = new LinkedBlockingQueue<>();
+
+        try {
+            // when
+            DenoRunner.pump(new ByteArrayInputStream(utf8("first\nsecond\n")), lines::add);
+            DenoRunner.pumpFrames(new ByteArrayInputStream(frame("frame")), frames::add);
+
+            // then
+            assertEquals("first", lines.poll(5, TimeUnit.SECONDS));
+            assertEquals("second", lines.poll(5, TimeUnit.SECONDS));
+            assertArrayEquals(utf8("frame"), frames.poll(5, TimeUnit.SECONDS));
+        } finally {
+            for (PipedOutputStream out : blocked) {
+                out.close();
+            }
+        }
+    }
+
+    private static byte[] frame(String payload) {
+        final byte[] bytes = utf8(payload);
+        return concat(length(bytes.length), bytes);
+    }
+
+    private static byte[] length(int length) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DataOutputStream data = new DataOutputStream(out)) {
+            data.writeInt(length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,163 @@
+package io.mvnpm.esbuild.deno;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import io.mvnpm.esbuild.model.BundleResult;
+import io.mvnpm.esbuild.script.FakeDevProcess;
+import io.mvnpm.esbuild.script.RegisteredDevProcess;
+import io.mvnpm.esbuild.util.ProcessStats;
+
+public class ProcessRegistryTest {
+
+    private final List<FakeDevProcess> processes = new CopyOnWriteArrayList<>();
+
+    private RegisteredDevProcess register(ProcessRegistry registry) throws Exception {
+        final RegisteredDevProcess process = new RegisteredDevProcess(() -> {
+            final FakeDevProcess p = new FakeDevProcess();
+            processes.add(p);
+            return p;
+        }, registry, 5);
+        process.init();
+        return process;
+    }
+
+    @Test
+    public void shouldEvictIdleProcessAndReviveOnBuild() throws Exception {
+        // given
+        final ProcessRegistry registry = new ProcessRegistry(Duration.ofMillis(1), 0);
+        final RegisteredDevProcess process = register(registry);
+        process.build();
+        Thread.sleep(20);
+
+        // when
+        registry.enforce();
+
+        // then
+        assertTrue(processes.get(0).isClosed(), "the idle process is closed");
+        assertTrue(registry.processes().isEmpty());
+        assertTrue(process.isAlive(), "it is revived on the next build");
+
+        // when
+        process.build(Set.of(Path.of("app.js")));
+
+        // then
+        assertEquals(2, processes.size());
+        assertEquals(List.of(Set.of()), processes.get(1).builds(), "the build after a revival is a full build");
+        assertEquals(1, process.revivals());
+        assertEquals(1, registry.processes().size());
+    }
+
+    @Test
+    public void shouldNotEvictProcessInUse() throws Exception {
+        // given
+        final ProcessRegistry registry = new ProcessRegistry(Duration.ofMillis(1), 0);
+        final RegisteredDevProcess process = register(registry);
+        final FakeDevProcess first = processes.get(0);
+        final CompletableFuture<BundleResult> held = first.holdBuilds();
+        final CompletableFuture<BundleResult> build = process.buildAsync();
+        Thread.sleep(20);
+
+        // when
+        registry.enforce();
+
+        // then
+        assertFalse(first.isClosed(), "the process is building");
+        held.complete(first.result());
+        build.join();
+        Thread.sleep(20);
+        registry.enforce();
+        assertTrue(first.isClosed());
+        assertEquals(1, registry.evictions());
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedOverMemoryBudget() throws Exception {
+        assumeTrue(ProcessStats.rss(ProcessHandle.current()).isPresent(), "the memory is read from /proc");
+        final List<Process> children = new ArrayList<>();
+        try {
+            for (int i = 0; i < 3; i++) {
+                children.add(new ProcessBuilder("sleep", "60").start());
+            }
+            // given
+            final ProcessRegistry registry = new ProcessRegistry(null, 1);
+            final ProcessRegistry.Registration oldest = registry.register("oldest", new FakeEvictable(children.get(0)));
+            final ProcessRegistry.Registration old = registry.register("old", new FakeEvictable(children.get(1)));
+            final ProcessRegistry.Registration recent = registry.register("recent", new FakeEvictable(children.get(2)));
+            oldest.release();
+            Thread.sleep(2);
+            old.release();
+            Thread.sleep(2);
+            recent.release();
+
+            // when
+            registry.enforce();
+
+            // then
+            assertTrue(oldest.isClosed());
+            assertTrue(old.isClosed());
+            assertFalse(recent.isClosed(), "the most recently used process is kept");
+            assertEquals("recent", registry.processes().get(0).name());
+        } finally {
+            children.forEach(Process::destroyForcibly);
+        }
+    }
+
+    @Test
+    public void shouldNotEvictForMemoryWhenTheProcessIsShared() throws Exception {
+        assumeTrue(ProcessStats.rss(ProcessHandle.current()).isPresent(), "the memory is read from /proc");
+        // given
+        final ProcessRegistry registry = new ProcessRegistry(null, 1);
+        final List<ProcessRegistry.Registration> registrations = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            // e.g. the contexts of the shared esbuild service
+            final ProcessRegistry.Registration registration = registry.register("context-" + i,
+                    new FakeEvictable(ProcessHandle.current()));
+            registration.release();
+            registrations.add(registration);
+            Thread.sleep(2);
+        }
+
+        // when
+        registry.enforce();
+
+        // then
+        assertTrue(registrations.stream().noneMatch(ProcessRegistry.Registration::isClosed),
+                "evicting a context would not free the shared process");
+        assertEquals(0, registry.evictions());
+    }
+
+    private static final class FakeEvictable implements ProcessRegistry.Evictable {
+        private final ProcessHandle handle;
+
+        private FakeEvictable(Process process) {
+            this(process.toHandle());
+        }
+
+        private FakeEvictable(ProcessHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public Optional<ProcessHandle> processHandle() {
+            return Optional.of(handle);
+        }
+
+        @Override
+        public void evict() {
+        }
+    }
+}
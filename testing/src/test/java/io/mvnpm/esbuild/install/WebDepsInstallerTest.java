@@ -13,12 +13,17 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.zip.ZipFile;
 
 import org.junit.jupiter.api.Test;
 
 import io.mvnpm.esbuild.model.WebDependency;
+import io.mvnpm.esbuild.util.JarInspector;
 
 public class WebDepsInstallerTest {
 
@@ -138,6 +143,100 @@ public class WebDepsInstallerTest {
         assertEquals(55, installedVaadin.dirs().size());
     }
 
+    @Test
+    void testInstallSamePackageInParallel() throws IOException {
+        Path tempDir = Files.createTempDirectory("testInstallSamePackageInParallel");
+        install(tempDir, getWebDependencies(
+                List.of("/mvnpm/stimulus-3.2.0.jar", "/mvnpm/stimulus-3.2.1.jar", "/mvnpm/hooks-0.4.9.jar")));
+        final MvnpmInfo mvnpmInfo = readMvnpmInfo(getMvnpmInfoPath(tempDir));
+        checkNodeModulesDir(tempDir, mvnpmInfo);
+        assertEquals(mvnpmInfo.installed(),
+                Set.of(new MvnpmInfo.InstalledDependency("org.something:stimulus-3.2.0", List.of("@hotwired/stimulus")),
+                        new MvnpmInfo.InstalledDependency("org.something:stimulus-3.2.1", List.of("@hotwired/stimulus")),
+                        new MvnpmInfo.InstalledDependency("org.something:hooks-0.4.9", List.of("@restart/hooks"))));
+        assertFalse(Files.exists(tempDir.resolve(".mvnpm/tmp")));
+    }
+
+    @Test
+    void testFindPackageRootsFromCentralDirectory() throws IOException {
+        final List<WebDependency> deps = getWebDependencies(List.of("/mvnpm/hooks-0.4.9.jar", "/mvnpm/stimulus-3.2.0.jar"));
+        try (ZipFile hooks = new ZipFile(deps.get(0).path().toFile());
+                ZipFile stimulus = new ZipFile(deps.get(1).path().toFile())) {
+            assertEquals(Map.of("@restart/hooks", "META-INF/resources/_static/hooks/"),
+                    JarInspector.findPackageNameAndRoot(deps.get(0).id(), hooks, deps.get(0).type()));
+            assertTrue(JarInspector.findPackageNameAndRoot(deps.get(1).id(), stimulus, deps.get(1).type()).isEmpty(),
+                    "the package is found from the import map once extracted");
+        }
+        Path tempDir = Files.createTempDirectory("testInstallFromCentralDirectory");
+        install(tempDir, deps.subList(0, 1));
+        assertTrue(Files.exists(tempDir.resolve("@restart/hooks/useAnimationFrame/package.json")));
+        assertFalse(Files.exists(tempDir.resolve("@restart/hooks/META-INF")));
+    }
+
+    @Test
+    void testInstallFromPackageStore() throws IOException {
+        final PackageStore store = new PackageStore(Files.createTempDirectory("testPackageStore"));
+        final List<WebDependency> deps = getWebDependencies(List.of("/mvnpm/stimulus-3.2.0.jar", "/mvnpm/hooks-0.4.9.jar"));
+        Path first = Files.createTempDirectory("testInstallFromPackageStore");
+        Path second = Files.createTempDirectory("testInstallFromPackageStore");
+        install(first, deps, store);
+        install(second, deps, store);
+        final MvnpmInfo mvnpmInfo = readMvnpmInfo(getMvnpmInfoPath(second));
+        assertEquals(readMvnpmInfo(getMvnpmInfoPath(first)), mvnpmInfo);
+        assertEquals(mvnpmInfo.installed(),
+                Set.of(new MvnpmInfo.InstalledDependency("org.something:stimulus-3.2.0", List.of("@hotwired/stimulus")),
+                        new MvnpmInfo.InstalledDependency("org.something:hooks-0.4.9", List.of("@restart/hooks"))));
+        checkNodeModulesDir(second, mvnpmInfo);
+        assertTrue(Files.isSameFile(first.resolve("@restart/hooks/package.json"),
+                second.resolve("@restart/hooks/package.json")), "the files are linked from the store");
+        assertTrue(Files.isSameFile(first.resolve("@hotwired/stimulus/package.json"),
+                second.resolve("@hotwired/stimulus/package.json")));
+        assertFalse(Files.exists(store.root().resolve(PackageStore.key(deps.get(1))).resolve(".mvnpm")));
+    }
+
+    @Test
+    void testStorePackageConcurrently() throws IOException {
+        final PackageStore store = new PackageStore(Files.createTempDirectory("testStorePackageConcurrently"));
+        final WebDependency dep = getWebDependencies(List.of("/mvnpm/hooks-0.4.9.jar")).get(0);
+        final PackageStore.Extractor extractor = dir -> {
+            Files.createDirectories(dir.resolve("pkg"));
+            Files.writeString(dir.resolve("pkg/package.json"), "{}");
+            return Optional.of(List.of("pkg"));
+        };
+        // another installation stores the same entry while this one extracts it
+        final Optional<PackageStore.Entry> entry = store.entry(dep, dir -> {
+            store.entry(dep, extractor);
+            return extractor.extract(dir);
+        });
+        assertTrue(entry.isPresent());
+        assertEquals(List.of("pkg"), entry.get().packages());
+        assertTrue(Files.exists(entry.get().dir().resolve("pkg/package.json")));
+    }
+
+    @Test
+    void testInstallChangedJar() throws IOException {
+        Path tempDir = Files.createTempDirectory("testInstallChangedJar");
+        final Path jar = Files.createTempDirectory("testInstallChangedJarRepo").resolve("stimulus-3.2.1.jar");
+        Files.copy(getWebDependencies(List.of("/mvnpm/stimulus-3.2.1.jar")).get(0).path(), jar);
+        final List<WebDependency> deps = List.of(
+                WebDependency.of("org.something:stimulus", jar, WebDependency.WebDependencyType.MVNPM));
+        assertTrue(install(tempDir, deps));
+        assertFalse(install(tempDir, deps), "nothing changed");
+        final MvnpmInfo.Fingerprint installed = readMvnpmInfo(getMvnpmInfoPath(tempDir)).fingerprints()
+                .get("org.something:stimulus");
+        assertEquals(Files.size(jar), installed.size());
+
+        // e.g. a SNAPSHOT built again
+        Files.copy(getWebDependencies(List.of("/mvnpm/stimulus-3.2.0.jar")).get(0).path(), jar,
+                StandardCopyOption.REPLACE_EXISTING);
+        assertTrue(install(tempDir, deps), "the changed jar is installed again");
+        final MvnpmInfo mvnpmInfo = readMvnpmInfo(getMvnpmInfoPath(tempDir));
+        assertEquals(Files.size(jar), mvnpmInfo.fingerprints().get("org.something:stimulus").size());
+        assertEquals(Files.getLastModifiedTime(jar).toMillis(),
+                mvnpmInfo.fingerprints().get("org.something:stimulus").lastModified());
+        assertFalse(install(tempDir, deps));
+    }
+
     @Test
     void testNoInfo() throws IOException {
         Path tempDir = Files.createTempDirectory("testNoInfo");
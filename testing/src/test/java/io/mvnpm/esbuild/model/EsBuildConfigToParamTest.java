@@ -109,4 +109,33 @@ public class EsBuildConfigToParamTest {
         assertThat(asList(params), containsInAnyOrder("--define:FOO=BAR", "--define:foo=bar"));
     }
 
+    @Test
+    public void shouldNotOutputNonEsBuildFlags() {
+        // given
+        final EsBuildConfigBuilder esBuildConfig = new EsBuildConfigBuilder();
+        esBuildConfig.esbuildVersion("0.25.0");
+        esBuildConfig.serve(true);
+        esBuildConfig.bundle(true);
+
+        // when
+        final String[] params = esBuildConfig.build().toParams();
+
+        // then
+        assertThat(asList(params), containsInAnyOrder("--bundle"));
+    }
+
+    @Test
+    public void shouldOnlyLowerCaseEnums() {
+        // given
+        final EsBuildConfigBuilder esBuildConfig = new EsBuildConfigBuilder();
+        esBuildConfig.platform(EsBuildConfig.Platform.NODE);
+        esBuildConfig.publicPath("/Static/App");
+
+        // when
+        final String[] params = esBuildConfig.build().toParams();
+
+        // then
+        assertThat(asList(params), containsInAnyOrder("--platform=node", "--public-path=/Static/App"));
+    }
+
 }
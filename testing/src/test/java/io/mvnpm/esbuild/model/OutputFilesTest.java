@@ -0,0 +1,55 @@
+package io.mvnpm.esbuild.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class OutputFilesTest {
+
+    @Test
+    public void shouldSliceContentsFromDirectBuffer() throws IOException {
+        // given
+        final Path dist = Files.createTempDirectory("output-files").resolve("dist");
+        final byte[] data = "--alert('foo');body{}".getBytes(StandardCharsets.UTF_8);
+
+        // when
+        final OutputFiles outputFiles = OutputFiles.builder(dist, 19)
+                .add(dist.resolve("main.js").toString(), "A", data, 2, 13)
+                .add(dist.resolve("css/main.css").toString(), "B", data, 15, 6)
+                .build();
+
+        // then
+        assertEquals(Set.of("main.js", "css/main.css"), outputFiles.paths());
+        assertEquals(19, outputFiles.totalBytes());
+        final OutputFiles.OutputFile js = outputFiles.get("main.js").orElseThrow();
+        assertTrue(js.contents().isDirect());
+        assertTrue(js.contents().isReadOnly());
+        assertEquals("A", js.hash());
+        assertEquals("alert('foo');", new String(js.bytes(), StandardCharsets.UTF_8));
+        assertEquals("body{}", new String(outputFiles.get("css/main.css").orElseThrow().bytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldWriteFiles() throws IOException {
+        // given
+        final Path dist = Files.createTempDirectory("output-files");
+        final byte[] data = "alert('foo');".getBytes(StandardCharsets.UTF_8);
+        final OutputFiles outputFiles = OutputFiles.builder(dist, data.length)
+                .add(dist.resolve("js/main.js").toString(), "A", data, 0, data.length)
+                .build();
+
+        // when
+        final Path target = Files.createTempDirectory("output-files-target");
+        outputFiles.writeTo(target);
+
+        // then
+        assertEquals("alert('foo');", Files.readString(target.resolve("js/main.js")));
+    }
+}
@@ -0,0 +1,50 @@
+package io.mvnpm.esbuild.runtime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+import io.mvnpm.esbuild.BundlingException;
+import io.mvnpm.esbuild.model.BundleOptions;
+
+public class RuntimesTest {
+
+    @Test
+    public void shouldFindRuntimeByName() {
+        assertSame(Runtimes.NATIVE, Runtimes.byName("NATIVE").orElseThrow());
+        assertSame(Runtimes.DENO, Runtimes.byName("deno").orElseThrow());
+        assertTrue(Runtimes.byName("rhino").isEmpty());
+    }
+
+    @Test
+    public void shouldFallbackToDenoWithoutNativeBinary() throws IOException {
+        // given
+        final Path nodeModules = Files.createTempDirectory("runtimes").resolve(BundleOptions.NODE_MODULES);
+        final BundleOptions options = BundleOptions.builder().withNodeModulesDir(nodeModules).build();
+
+        // when
+        final EsBuildRuntime runtime = Runtimes.select(nodeModules, options);
+
+        // then
+        assertEquals("deno", runtime.name());
+    }
+
+    @Test
+    public void shouldFailWhenSelectedRuntimeIsNotAvailable() throws IOException {
+        // given
+        final Path nodeModules = Files.createTempDirectory("runtimes").resolve(BundleOptions.NODE_MODULES);
+        final BundleOptions options = BundleOptions.builder().withNodeModulesDir(nodeModules)
+                .withRuntime(Runtimes.NATIVE).build();
+
+        // then
+        assertThrows(BundlingException.class, () -> Runtimes.select(nodeModules, options));
+    }
+
+}
@@ -0,0 +1,44 @@
+package io.mvnpm.esbuild.script;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+import io.mvnpm.esbuild.model.BundleOptions;
+import io.mvnpm.esbuild.model.EsBuildConfig;
+
+public class ContextCacheTest {
+
+    private static final Path WORK_DIR = Path.of("target/bundle");
+    private static final Path NODE_MODULES = Path.of("target/node_modules");
+
+    @Test
+    public void shouldFingerprintEqualOptionsTheSame() throws IOException {
+        final BundleOptions options = BundleOptions.builder()
+                .withEsConfig(EsBuildConfig.builder().minify(true).outDir("dist").build())
+                .build();
+        final BundleOptions same = BundleOptions.builder()
+                .withEsConfig(EsBuildConfig.builder().outDir("dist").minify(true).build())
+                .withTimeout(10)
+                .build();
+        assertEquals(ContextCache.fingerprint(WORK_DIR, NODE_MODULES, options),
+                ContextCache.fingerprint(WORK_DIR.resolve("."), NODE_MODULES, same));
+    }
+
+    @Test
+    public void shouldFingerprintDifferentOptionsDifferently() throws IOException {
+        final BundleOptions options = BundleOptions.builder()
+                .withEsConfig(EsBuildConfig.builder().minify(true).build())
+                .build();
+        final BundleOptions other = BundleOptions.builder()
+                .withEsConfig(EsBuildConfig.builder().minify(false).build())
+                .build();
+        final String fingerprint = ContextCache.fingerprint(WORK_DIR, NODE_MODULES, options);
+        assertNotEquals(fingerprint, ContextCache.fingerprint(WORK_DIR, NODE_MODULES, other));
+        assertNotEquals(fingerprint, ContextCache.fingerprint(Path.of("target/other"), NODE_MODULES, options));
+    }
+}
@@ -0,0 +1,141 @@
+package io.mvnpm.esbuild.script;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.mvnpm.esbuild.BundlingException;
+import io.mvnpm.esbuild.deno.ScriptLog;
+import io.mvnpm.esbuild.model.BundleResult;
+import io.mvnpm.esbuild.model.OutputFiles;
+
+/**
+ * A dev process recording its builds without running anything. The builds succeed immediately unless they are held, failed
+ * or the process is killed.
+ */
+public class FakeDevProcess implements DevProcess {
+    private final Path workDir;
+    private final OutputFiles outputFiles;
+    private final BundleResult result;
+    private final List<Set<Path>> builds = new CopyOnWriteArrayList<>();
+    private final BlockingQueue<Set<Path>> nextBuilds = new LinkedBlockingQueue<>();
+    private volatile boolean alive = true;
+    private volatile boolean closed;
+    private volatile CompletableFuture<BundleResult> pending;
+    private volatile BundlingException failure;
+
+    public FakeDevProcess() {
+        this(Path.of("."));
+    }
+
+    public FakeDevProcess(Path workDir) {
+        this(workDir, OutputFiles.empty());
+    }
+
+    public FakeDevProcess(Path workDir, OutputFiles outputFiles) {
+        this.workDir = workDir;
+        this.outputFiles = outputFiles;
+        this.result = new BundleResult(dist(), workDir, new ScriptLog());
+    }
+
+    /**
+     * Fail the next builds with this exception.
+     */
+    public void failBuilds(BundlingException failure) {
+        this.failure = failure;
+    }
+
+    /**
+     * @return the result of the next builds, to complete by the caller
+     */
+    public CompletableFuture<BundleResult> holdBuilds() {
+        final CompletableFuture<BundleResult> held = new CompletableFuture<>();
+        pending = held;
+        return held;
+    }
+
+    /**
+     * Simulate the death of the process, the next builds fail like those of a closed DevScript.
+     */
+    public void kill() {
+        alive = false;
+    }
+
+    /**
+     * @return the changed files of each build, in order
+     */
+    public List<Set<Path>> builds() {
+        return List.copyOf(builds);
+    }
+
+    /**
+     * @return the changed files of the next build not returned yet, or null if there is none within the timeout
+     */
+    public Set<Path> nextBuild(long timeout, TimeUnit unit) throws InterruptedException {
+        return nextBuilds.poll(timeout, unit);
+    }
+
+    /**
+     * @return the result of the successful builds
+     */
+    public BundleResult result() {
+        return result;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void init() {
+    }
+
+    @Override
+    public void build() {
+        buildAsync(Set.of()).join();
+    }
+
+    @Override
+    public CompletableFuture<BundleResult> buildAsync(Set<Path> changed) {
+        builds.add(changed);
+        nextBuilds.add(changed);
+        if (!alive) {
+            return CompletableFuture.failedFuture(new IOException("DevScript process is closed"));
+        }
+        if (pending != null) {
+            return pending;
+        }
+        return failure != null ? CompletableFuture.failedFuture(failure) : CompletableFuture.completedFuture(result);
+    }
+
+    @Override
+    public OutputFiles outputFiles() {
+        return outputFiles;
+    }
+
+    @Override
+    public Path workDir() {
+        return workDir;
+    }
+
+    @Override
+    public Path dist() {
+        return workDir.resolve("dist");
+    }
+
+    @Override
+    public boolean isAlive() {
+        return alive && !closed;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,104 @@
+package io.mvnpm.esbuild.script;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.mvnpm.esbuild.deno.ScriptLog;
+import io.mvnpm.esbuild.model.BundleResult;
+
+public class RebuildSchedulerTest {
+
+    private final List<Set<Path>> builds = new CopyOnWriteArrayList<>();
+    private final List<CompletableFuture<BundleResult>> running = new CopyOnWriteArrayList<>();
+
+    private CompletableFuture<BundleResult> build(Set<Path> changed) {
+        final CompletableFuture<BundleResult> future = new CompletableFuture<>();
+        builds.add(changed);
+        running.add(future);
+        return future;
+    }
+
+    private static BundleResult result() {
+        return new BundleResult(Path.of("dist"), Path.of("."), new ScriptLog());
+    }
+
+    private void awaitBuilds(int count) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (builds.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, builds.size());
+    }
+
+    @Test
+    public void shouldCoalesceRequestsDuringRebuild() throws Exception {
+        // given
+        final RebuildScheduler scheduler = new RebuildScheduler(this::build, Duration.ZERO);
+        final CompletableFuture<BundleResult> first = scheduler.request(Set.of(Path.of("a.js")));
+        awaitBuilds(1);
+
+        // when
+        final List<CompletableFuture<BundleResult>> waiting = List.of(
+                scheduler.request(Set.of(Path.of("b.js"))),
+                scheduler.request(Set.of(Path.of("c.js"))),
+                scheduler.request(Set.of(Path.of("b.js"))));
+        final BundleResult firstResult = result();
+        running.get(0).complete(firstResult);
+        awaitBuilds(2);
+        final BundleResult secondResult = result();
+        running.get(1).complete(secondResult);
+
+        // then
+        assertSame(firstResult, first.get(5, TimeUnit.SECONDS));
+        for (CompletableFuture<BundleResult> future : waiting) {
+            assertSame(secondResult, future.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(Set.of(Path.of("b.js"), Path.of("c.js")), builds.get(1));
+        assertEquals(new RebuildScheduler.Stats(2, 4, 3, 3), scheduler.stats());
+    }
+
+    @Test
+    public void shouldDebounceRequests() throws Exception {
+        // given
+        final RebuildScheduler scheduler = new RebuildScheduler(this::build, Duration.ofMillis(200));
+
+        // when
+        final CompletableFuture<BundleResult> first = scheduler.request(Set.of(Path.of("a.js")));
+        final CompletableFuture<BundleResult> second = scheduler.request(Set.of());
+        awaitBuilds(1);
+        running.get(0).complete(result());
+
+        // then
+        assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+        assertTrue(builds.get(0).isEmpty(), "a request without changed files rebuilds unconditionally");
+        assertEquals(2, scheduler.stats().lastAbsorbed());
+    }
+
+    @Test
+    public void shouldCancelRebuildWhenAllCallersCancel() throws Exception {
+        // given
+        final RebuildScheduler scheduler = new RebuildScheduler(this::build, Duration.ZERO);
+        final CompletableFuture<BundleResult> first = scheduler.request(Set.of());
+        final CompletableFuture<BundleResult> second = scheduler.request(Set.of());
+        awaitBuilds(1);
+
+        // when
+        first.cancel(false);
+        assertTrue(!running.get(0).isCancelled(), "another caller waits for the rebuild");
+        second.cancel(false);
+
+        // then
+        assertTrue(running.get(0).isCancelled());
+    }
+}
@@ -0,0 +1,85 @@
+package io.mvnpm.esbuild.script;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.mvnpm.esbuild.BundlingException;
+import io.mvnpm.esbuild.model.BundleResult;
+
+public class SupervisedDevProcessTest {
+
+    private final List<FakeDevProcess> processes = new CopyOnWriteArrayList<>();
+
+    private SupervisedDevProcess supervise() throws IOException {
+        final SupervisedDevProcess process = new SupervisedDevProcess(() -> {
+            final FakeDevProcess p = new FakeDevProcess();
+            processes.add(p);
+            return p;
+        }, 5, Duration.ofMillis(10), Duration.ofMillis(50), 3);
+        process.init();
+        return process;
+    }
+
+    @Test
+    public void shouldRestartDeadProcess() throws Exception {
+        // given
+        final SupervisedDevProcess process = supervise();
+        processes.get(0).kill();
+
+        // when
+        process.build();
+
+        // then
+        assertEquals(2, processes.size());
+        assertEquals(List.of(Set.of()), processes.get(1).builds());
+        assertTrue(processes.get(0).isClosed(), "the dead process is closed");
+        assertEquals(1, process.stats().restarts());
+        assertEquals(0, process.stats().consecutiveFailures());
+    }
+
+    @Test
+    public void shouldReplayBuildWhenProcessDies() throws Exception {
+        // given
+        final SupervisedDevProcess process = supervise();
+        final FakeDevProcess first = processes.get(0);
+        final CompletableFuture<BundleResult> held = first.holdBuilds();
+        final CompletableFuture<BundleResult> build = process.buildAsync(Set.of(Path.of("app.js")));
+
+        // when
+        first.kill();
+        held.completeExceptionally(new IOException("DevScript process is closed"));
+
+        // then
+        final BundleResult result = build.get(5, TimeUnit.SECONDS);
+        assertSame(processes.get(1).result(), result);
+        assertEquals(List.of(Set.of()), processes.get(1).builds(), "the replay is a full build");
+        assertEquals(1, process.stats().restarts());
+    }
+
+    @Test
+    public void shouldNotRetryBuildFailures() throws Exception {
+        // given
+        final SupervisedDevProcess process = supervise();
+        processes.get(0).failBuilds(new BundlingException("EsBuild Bundling failed"));
+
+        // when
+        assertThrows(BundlingException.class, process::build);
+
+        // then
+        assertEquals(1, processes.size());
+        assertEquals(0, process.stats().restarts());
+    }
+}
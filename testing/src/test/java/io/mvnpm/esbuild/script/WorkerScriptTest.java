@@ -0,0 +1,68 @@
+package io.mvnpm.esbuild.script;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.mvnpm.esbuild.deno.DenoRunner;
+import io.mvnpm.esbuild.model.BundleOptions;
+import io.mvnpm.esbuild.runtime.JsRuntime;
+
+public class WorkerScriptTest {
+
+    @Test
+    public void shouldFailRequestsSentAfterTheOutputIsClosed() throws Exception {
+        // given: a worker which closes its output but keeps running
+        assumeTrue(!DenoRunner.isWindows());
+        final Path workDir = Files.createTempDirectory("worker-script");
+        final BundleOptions bundleOptions = BundleOptions.builder()
+                .withWorkDir(workDir)
+                .withNodeModulesDir(Files.createDirectories(workDir.resolve(BundleOptions.NODE_MODULES)))
+                .withRuntime(new ClosedOutputRuntime())
+                .build();
+        try (WorkerScript worker = new WorkerScript(workDir, bundleOptions)) {
+            final ExecutionException init = assertThrows(ExecutionException.class,
+                    () -> worker.start().get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IOException.class, init.getCause());
+            assertTrue(worker.isAlive(), "the process is still running");
+
+            // when
+            final ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> worker.rebuild(worker.newContextKey()).get(5, TimeUnit.SECONDS));
+
+            // then
+            assertInstanceOf(IOException.class, e.getCause());
+            assertEquals("WorkerScript process is closed", e.getCause().getMessage());
+            assertEquals(0, worker.pendingRequests());
+        }
+    }
+
+    private static class ClosedOutputRuntime implements JsRuntime {
+
+        @Override
+        public String name() {
+            return "closed-output";
+        }
+
+        @Override
+        public boolean isAvailable(Path nodeModules, BundleOptions bundleOptions) {
+            return true;
+        }
+
+        @Override
+        public List<String> command(Path nodeModules, Path scriptFile, boolean debug) {
+            return List.of("sh", "-c", "exec > /dev/null; exec cat > /dev/null");
+        }
+    }
+}
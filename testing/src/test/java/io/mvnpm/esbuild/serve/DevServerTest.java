@@ -0,0 +1,144 @@
+package io.mvnpm.esbuild.serve;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import io.mvnpm.esbuild.model.OutputFiles;
+import io.mvnpm.esbuild.model.WatchBuildResult;
+import io.mvnpm.esbuild.script.DevProcess;
+import io.mvnpm.esbuild.script.FakeDevProcess;
+
+public class DevServerTest {
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+    @Test
+    public void shouldServeOutputDirectoryWithEtag() throws Exception {
+        // given
+        final Path workDir = Files.createTempDirectory("serve");
+        Files.createDirectories(workDir.resolve("dist"));
+        Files.writeString(workDir.resolve("dist/main.js"), "alert('foo');");
+        final Path serveDir = Files.createDirectories(workDir.resolve("public"));
+        Files.writeString(serveDir.resolve("index.html"), "<html><head></head></html>");
+
+        try (DevServer server = newServer(new FakeDevProcess(workDir, OutputFiles.empty()), serveDir)) {
+            // when
+            final HttpResponse<String> js = get(server, "main.js", null);
+            final HttpResponse<String> cached = get(server, "main.js", js.headers().firstValue("ETag").orElseThrow());
+            final HttpResponse<String> index = get(server, "", null);
+
+            // then
+            assertEquals(200, js.statusCode());
+            assertEquals("alert('foo');", js.body());
+            assertTrue(js.headers().firstValue("Content-Type").orElseThrow().startsWith("text/javascript"));
+            assertEquals(304, cached.statusCode());
+            assertEquals("<html><head>" + HmrClient.TAG + "</head></html>", index.body());
+            assertTrue(get(server, HmrClient.PATH.substring(1), null).body().contains("new EventSource('/esbuild')"));
+            assertEquals(404, get(server, "missing.js", null).statusCode());
+        }
+    }
+
+    @Test
+    public void shouldServeInMemoryOutput() throws Exception {
+        // given
+        final Path workDir = Files.createTempDirectory("serve");
+        final Path dist = workDir.resolve("dist");
+        final byte[] data = "body{}".getBytes(StandardCharsets.UTF_8);
+        final OutputFiles outputFiles = OutputFiles.builder(dist, data.length)
+                .add(dist.resolve("main.css").toString(), "HASH", data, 0, data.length)
+                .build();
+
+        try (DevServer server = newServer(new FakeDevProcess(workDir, outputFiles), null)) {
+            // when
+            final HttpResponse<String> css = get(server, "main.css", null);
+
+            // then
+            assertEquals(200, css.statusCode());
+            assertEquals("body{}", css.body());
+            assertEquals("\"HASH\"", css.headers().firstValue("ETag").orElseThrow());
+            assertEquals(304, get(server, "main.css", "\"HASH\"").statusCode());
+        }
+    }
+
+    @Test
+    public void shouldRejectPathsOutsideServedDirectories() {
+        assertNull(DevServer.toRelativePath("/../secret.txt"));
+        assertNull(DevServer.toRelativePath("/js/../../secret.txt"));
+        assertEquals("index.html", DevServer.toRelativePath("/"));
+        assertEquals("js/index.html", DevServer.toRelativePath("/js/"));
+    }
+
+    @Test
+    public void shouldComputeChangedOutputs() {
+        final OutputChange change = OutputChange.between(Map.of("main.js", "1", "main.css", "1", "old.js", "1"),
+                Map.of("main.js", "1", "main.css", "2", "chunk.js", "1"));
+        assertEquals(new OutputChange(List.of("/chunk.js"), List.of("/old.js"), List.of("/main.css")), change);
+        assertEquals("{\"added\":[\"/chunk.js\"],\"removed\":[\"/old.js\"],\"updated\":[\"/main.css\"]}", change.toJson());
+        assertTrue(OutputChange.between(Map.of("main.js", "1"), Map.of("main.js", "1")).isEmpty());
+    }
+
+    @Test
+    public void shouldPushChangeEventAfterSuccessfulBuild() throws Exception {
+        // given
+        final Path workDir = Files.createTempDirectory("serve");
+        final Path css = Files.createDirectories(workDir.resolve("dist")).resolve("main.css");
+        Files.writeString(css, "body{}");
+        try (DevServer server = newServer(new FakeDevProcess(workDir, OutputFiles.empty()), null)) {
+            final HttpResponse<InputStream> events = client.send(
+                    HttpRequest.newBuilder(server.uri().resolve(DevServer.EVENTS_PATH)).build(),
+                    HttpResponse.BodyHandlers.ofInputStream());
+            assertEquals("text/event-stream", events.headers().firstValue("Content-Type").orElseThrow());
+            final long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (server.clients() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+
+            // when
+            assertTrue(server.publishChange().isEmpty(), "nothing changed");
+            Files.writeString(css, "body{color:red}");
+            server.accept(new WatchBuildResult("ok"));
+
+            // then
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(events.body(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null && !line.startsWith("event:")) {
+                    // skip the retry field
+                }
+                assertEquals("event: change", line);
+                assertEquals("data: {\"added\":[],\"removed\":[],\"updated\":[\"/main.css\"]}", reader.readLine());
+            }
+        }
+    }
+
+    private static DevServer newServer(DevProcess process, Path serveDir) throws Exception {
+        return new DevServer(process, serveDir, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)).start();
+    }
+
+    private HttpResponse<String> get(DevServer server, String path, String etag) throws Exception {
+        final HttpRequest.Builder request = HttpRequest.newBuilder(server.uri().resolve(path))
+                .timeout(Duration.ofSeconds(10));
+        if (etag != null) {
+            request.header("If-None-Match", etag);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,64 @@
+package io.mvnpm.esbuild.service;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.mvnpm.esbuild.BundlingException;
+import io.mvnpm.esbuild.deno.DenoRunner;
+
+public class EsBuildServiceTest {
+
+    @Test
+    public void shouldFailWhenTheServiceExitsBeforeItIsReady() throws IOException {
+        // given
+        assumeTrue(!DenoRunner.isWindows());
+        final Path nodeModules = fakeEsBuild("shouldFailWhenTheServiceExitsBeforeItIsReady", "exit 0");
+
+        // when
+        final BundlingException e = assertThrows(BundlingException.class, () -> EsBuildService.get(nodeModules));
+        final BundlingException again = assertThrows(BundlingException.class, () -> EsBuildService.get(nodeModules));
+
+        // then
+        assertTrue(e.getMessage().contains("EsBuild service failed to start"), e.getMessage());
+        assertTrue(again.getMessage().contains("EsBuild service failed to start"), "the failed start is not shared");
+    }
+
+    @Test
+    public void shouldCloseTheServiceWhenTheVersionDoesNotMatch() throws Exception {
+        // given
+        assumeTrue(!DenoRunner.isWindows());
+        final Path pidFile = Files.createTempFile("esbuild", ".pid");
+        final Path nodeModules = fakeEsBuild("shouldCloseTheServiceWhenTheVersionDoesNotMatch",
+                "echo $$ > '" + pidFile + "'",
+                "printf '\\005\\000\\000\\0009.9.9'",
+                "exec cat > /dev/null");
+
+        // when
+        final BundlingException e = assertThrows(BundlingException.class, () -> EsBuildService.get(nodeModules));
+
+        // then
+        assertTrue(e.getMessage().contains("does not match"), e.getMessage());
+        final long pid = Long.parseLong(Files.readString(pidFile).trim());
+        assertFalse(ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false), "the service is closed");
+    }
+
+    private static Path fakeEsBuild(String name, String... script) throws IOException {
+        final Path nodeModules = Files.createTempDirectory(name).resolve("node_modules");
+        for (String platform : List.of("linux-x64", "linux-arm64", "darwin-x64", "darwin-arm64")) {
+            final Path packageDir = Files.createDirectories(nodeModules.resolve("@esbuild").resolve(platform));
+            Files.writeString(packageDir.resolve("package.json"), "{\"version\": \"0.0.1\"}");
+            final Path binary = Files.createDirectories(packageDir.resolve("bin")).resolve("esbuild");
+            Files.writeString(binary, "#!/bin/sh\n" + String.join("\n", script) + "\n");
+        }
+        return nodeModules;
+    }
+}
@@ -0,0 +1,95 @@
+package io.mvnpm.esbuild.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.Test;
+
+import io.mvnpm.esbuild.BundlingException;
+
+public class ServiceProtocolTest {
+
+    @Test
+    public void shouldEncodePacket() {
+        // given
+        final ServiceProtocol.Packet packet = new ServiceProtocol.Packet(3, true, Map.of("a", true));
+
+        // when
+        final byte[] bytes = ServiceProtocol.encode(packet);
+
+        // then
+        assertArrayEquals(new byte[] {
+                16, 0, 0, 0, // length
+                6, 0, 0, 0, // id 3 << 1, request
+                6, 1, 0, 0, 0, // object with 1 key
+                1, 0, 0, 0, 'a', // key
+                1, 1 // true
+        }, bytes);
+    }
+
+    @Test
+    public void shouldDecodeWhatIsEncoded() {
+        // given
+        final Map<String, Object> value = new LinkedHashMap<>();
+        value.put("command", "build");
+        value.put("key", 42);
+        value.put("write", false);
+        value.put("stdinContents", null);
+        value.put("entries", List.of(List.of("", "main.js")));
+        value.put("contents", new byte[] { 1, 2, 3 });
+        final ServiceProtocol.Packet packet = new ServiceProtocol.Packet(7, false, value);
+
+        // when
+        final byte[] bytes = ServiceProtocol.encode(packet);
+        final ServiceProtocol.Packet decoded = ServiceProtocol.decode(Arrays.copyOfRange(bytes, 4, bytes.length));
+
+        // then
+        assertEquals(7, decoded.id());
+        assertFalse(decoded.isRequest());
+        final Map<?, ?> decodedValue = (Map<?, ?>) decoded.value();
+        assertEquals(List.of("command", "key", "write", "stdinContents", "entries", "contents"),
+                List.copyOf(decodedValue.keySet()));
+        assertEquals("build", decodedValue.get("command"));
+        assertEquals(42, decodedValue.get("key"));
+        assertEquals(false, decodedValue.get("write"));
+        assertTrue(decodedValue.containsKey("stdinContents"));
+        assertEquals(List.of(List.of("", "main.js")), decodedValue.get("entries"));
+        assertArrayEquals(new byte[] { 1, 2, 3 }, (byte[]) decodedValue.get("contents"));
+    }
+
+    @Test
+    public void shouldRejectTruncatedPacket() {
+        final byte[] bytes = ServiceProtocol.encode(new ServiceProtocol.Packet(1, true, "hello"));
+        assertThrows(IllegalArgumentException.class,
+                () -> ServiceProtocol.decode(Arrays.copyOfRange(bytes, 4, bytes.length - 1)));
+    }
+
+    @Test
+    public void shouldFailRequestWithError() {
+        // given
+        final CompletableFuture<Map<String, Object>> failed = new CompletableFuture<>();
+        final CompletableFuture<Map<String, Object>> succeeded = new CompletableFuture<>();
+
+        // when
+        EsBuildService.complete(failed, Map.of("error", "Cannot rebuild a disposed context"));
+        EsBuildService.complete(succeeded, Map.of("error", "", "errors", List.of()));
+
+        // then
+        final CompletionException e = assertThrows(CompletionException.class, failed::join);
+        assertInstanceOf(BundlingException.class, e.getCause());
+        assertTrue(e.getCause().getMessage().contains("Cannot rebuild a disposed context"));
+        assertEquals(List.of(), succeeded.join().get("errors"));
+    }
+
+}
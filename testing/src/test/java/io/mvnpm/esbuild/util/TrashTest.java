@@ -0,0 +1,55 @@
+package io.mvnpm.esbuild.util;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class TrashTest {
+
+    @Test
+    void shouldDeleteInBackground() throws Exception {
+        final Path parent = Files.createTempDirectory("shouldDeleteInBackground");
+        final Path dist = createTree(parent.resolve("dist"));
+        final var reclaimed = Trash.delete(dist);
+        assertFalse(Files.exists(dist), "the directory is moved to the trash right away");
+        Files.createDirectories(dist);
+        reclaimed.get(10, TimeUnit.SECONDS);
+        assertTrue(Files.isDirectory(dist), "the new directory is kept");
+        assertFalse(Files.exists(parent.resolve(Trash.TRASH_DIR)), "the trash is deleted once empty");
+    }
+
+    @Test
+    void shouldReclaimLeftoverTrash() throws Exception {
+        final Path parent = Files.createTempDirectory("shouldReclaimLeftoverTrash");
+        final Path leftover = createTree(parent.resolve(Trash.TRASH_DIR).resolve("dist-leftover"));
+        final Path dist = createTree(parent.resolve("dist"));
+        Trash.delete(dist).get(10, TimeUnit.SECONDS);
+        for (int i = 0; i < 100 && Files.exists(leftover); i++) {
+            Thread.sleep(100);
+        }
+        assertFalse(Files.exists(leftover), "the trash of a previous run is reclaimed");
+        assertFalse(Files.exists(dist));
+    }
+
+    @Test
+    void shouldIgnoreMissingPath() throws Exception {
+        final Path parent = Files.createTempDirectory("shouldIgnoreMissingPath");
+        Trash.delete(parent.resolve("missing")).get(10, TimeUnit.SECONDS);
+        assertFalse(Files.exists(parent.resolve(Trash.TRASH_DIR)));
+    }
+
+    private static Path createTree(Path root) throws IOException {
+        for (int i = 0; i < 3; i++) {
+            final Path dir = Files.createDirectories(root.resolve("dir" + i).resolve("nested"));
+            Files.writeString(dir.resolve("file.js"), "console.log(" + i + ");");
+            Files.writeString(root.resolve("file" + i + ".js"), "export const a = " + i + ";");
+        }
+        return root;
+    }
+}
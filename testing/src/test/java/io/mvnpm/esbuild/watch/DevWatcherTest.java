@@ -0,0 +1,89 @@
+package io.mvnpm.esbuild.watch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.mvnpm.esbuild.BundlingException;
+import io.mvnpm.esbuild.model.WatchBuildResult;
+import io.mvnpm.esbuild.script.FakeDevProcess;
+
+public class DevWatcherTest {
+
+    @Test
+    public void shouldRebuildOnChange() throws Exception {
+        assertRebuildOnChange(false);
+    }
+
+    @Test
+    public void shouldRebuildOnChangeWhenPolling() throws Exception {
+        assertRebuildOnChange(true);
+    }
+
+    private static void assertRebuildOnChange(boolean polling) throws Exception {
+        // given
+        final Path workDir = Files.createTempDirectory("watch");
+        final Path app = Files.writeString(workDir.resolve("app.js"), "alert('foo');");
+        Files.createDirectories(workDir.resolve("dist"));
+        final FakeDevProcess process = new FakeDevProcess(workDir);
+        final BlockingQueue<WatchBuildResult> results = new LinkedBlockingQueue<>();
+        final String previous = System.setProperty(DevWatcher.POLLING_PROPERTY, String.valueOf(polling));
+        try (DevWatcher watcher = new DevWatcher(process, List.of(workDir), Duration.ofMillis(50), false)
+                .addListener(results::add)) {
+            watcher.start();
+            if (polling) {
+                assertTrue(watcher.isPolling(), "polling is forced");
+            }
+            assertEquals(Set.of(), process.nextBuild(5, TimeUnit.SECONDS), "the first build is unconditional");
+            assertTrue(results.poll(5, TimeUnit.SECONDS).isSuccess());
+
+            // when
+            Thread.sleep(100);
+            Files.writeString(workDir.resolve("dist/app.js"), "ignored");
+            Files.writeString(app, "alert('bar');");
+
+            // then
+            final Set<Path> changed = process.nextBuild(5, TimeUnit.SECONDS);
+            assertTrue(changed != null && changed.contains(app.toAbsolutePath().normalize()), "changed: " + changed);
+            assertFalse(changed.stream().anyMatch(p -> p.toString().contains("dist")), "the output is ignored");
+            assertTrue(results.poll(5, TimeUnit.SECONDS).isSuccess());
+        } finally {
+            if (previous == null) {
+                System.clearProperty(DevWatcher.POLLING_PROPERTY);
+            } else {
+                System.setProperty(DevWatcher.POLLING_PROPERTY, previous);
+            }
+        }
+    }
+
+    @Test
+    public void shouldPublishFailures() throws Exception {
+        // given
+        final Path workDir = Files.createTempDirectory("watch");
+        final FakeDevProcess process = new FakeDevProcess(workDir);
+        final BundlingException failure = new BundlingException("EsBuild Bundling failed");
+        process.failBuilds(failure);
+        final BlockingQueue<WatchBuildResult> results = new LinkedBlockingQueue<>();
+
+        // when
+        try (DevWatcher watcher = new DevWatcher(process).addListener(results::add)) {
+            watcher.start();
+
+            // then
+            final WatchBuildResult result = results.poll(5, TimeUnit.SECONDS);
+            assertFalse(result.isSuccess());
+            assertEquals(failure, result.bundlingException());
+        }
+    }
+}